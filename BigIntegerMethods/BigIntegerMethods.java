@@ -1,29 +1,230 @@
 import java.math.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.lang.reflect.*;
+import java.io.*;
+
+// 積の木（二分木）の部分積を fork/join で並列に求めるタスク
+// 要素を半分ずつに分けて積を求め, 最後に掛け合わせる. 
+// 大きさの近いもの同士を掛けることになるので, 大きな数では Karatsuba/Toom-Cook の乗算が効く. 
+class ProductTask extends RecursiveTask<BigInteger> {
+    private static final long serialVersionUID = 1L;
+    static final int LEAF = 16; // これ以下の要素数なら分けずに順に掛ける
+    final BigInteger [] bis;
+    final int lo, hi;  // [lo, hi) の積を求める
+    ProductTask(BigInteger [] bis, int lo, int hi) {
+        this.bis = bis;
+        this.lo = lo;
+        this.hi = hi;
+    }
+    protected BigInteger compute() {
+        if(hi - lo <= LEAF) {
+            BigInteger s = BigInteger.ONE;
+            for(int i = lo; i < hi; i++) {
+                s = s.multiply(bis[i]);
+            }
+            return s;
+        }
+        int mid = (lo + hi) >>> 1;
+        ProductTask left = new ProductTask(bis, lo, mid);
+        left.fork(); // 左半分は別のスレッドに任せる
+        BigInteger r = new ProductTask(bis, mid, hi).compute();
+        return BigIntegerMethods.multiply(left.join(), r);
+    }
+}
+
+// 整数の列の集計結果（和・最大値・偶数の個数）. 1回の走査でまとめて求める
+class BigIntegerStats {
+    long count;           // 要素数
+    BigInteger sum = BigInteger.ZERO;
+    BigInteger max;       // 要素がなければ null
+    long evens;           // 偶数の個数
+    long smallSum;        // long に収まる要素の和はここに貯め, 溢れそうになったら sum に移す
+
+    // 要素を1つ加える
+    void add(BigInteger bi) {
+        count++;
+        if(bi.bitLength() < 63) {
+            long v = bi.longValue();
+            long t = smallSum + v;
+            if(((smallSum ^ t) & (v ^ t)) < 0) { // 溢れた
+                sum = sum.add(BigInteger.valueOf(smallSum));
+                t = v;
+            }
+            smallSum = t;
+        } else {
+            sum = sum.add(bi);
+        }
+        if(max == null || bi.compareTo(max) > 0) max = bi;
+        if(!bi.testBit(0)) evens++; // 剰余を作らずに最下位ビットで偶奇を判定
+    }
+    // 別の部分の集計結果を合わせる
+    BigIntegerStats combine(BigIntegerStats o) {
+        count += o.count;
+        sum = sum.add(o.getSum());
+        if(max == null || (o.max != null && o.max.compareTo(max) > 0)) max = o.max;
+        evens += o.evens;
+        return this;
+    }
+    BigInteger getSum() {
+        return sum.add(BigInteger.valueOf(smallSum));
+    }
+    public String toString() {
+        return "count = " + count + ", sum = " + getSum() + ", max = " + max + ", evens = " + evens;
+    }
+}
+
+// 配列（または10進数の文字列の配列）の範囲 [lo, hi) を並列に集計するタスク
+class StatsTask extends RecursiveTask<BigIntegerStats> {
+    private static final long serialVersionUID = 1L;
+    static final int LEAF = 1 << 13; // これ以下の要素数なら分けずに集計する
+    final BigInteger [] bis;  // どちらか一方を使う
+    final String [] strs;     // 文字列の場合は集計と一緒に変換も並列に行う
+    final int lo, hi;
+    StatsTask(BigInteger [] bis, String [] strs, int lo, int hi) {
+        this.bis = bis;
+        this.strs = strs;
+        this.lo = lo;
+        this.hi = hi;
+    }
+    protected BigIntegerStats compute() {
+        if(hi - lo <= LEAF) {
+            BigIntegerStats st = new BigIntegerStats();
+            for(int i = lo; i < hi; i++) {
+                st.add(bis != null ? bis[i] : new BigInteger(strs[i]));
+            }
+            return st;
+        }
+        int mid = (lo + hi) >>> 1;
+        StatsTask left = new StatsTask(bis, strs, lo, mid);
+        left.fork();
+        BigIntegerStats r = new StatsTask(bis, strs, mid, hi).compute();
+        return left.join().combine(r);
+    }
+}
+
+// a[i] * x ≡ b[i] (mod p) を範囲 [lo, hi) について並列に解くタスク
+// BATCH 個ずつに分け, 各まとまりの中では Montgomery の同時逆元計算で modInverse を1回に減らす
+class SolveTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+    static final int BATCH = 1 << 10; // これ以下の個数なら分けずに1回の modInverse で解く
+    final BigInteger [] as, bs, xs;
+    final BigInteger p;
+    final int lo, hi;
+    SolveTask(BigInteger [] as, BigInteger [] bs, BigInteger [] xs, BigInteger p, int lo, int hi) {
+        this.as = as;
+        this.bs = bs;
+        this.xs = xs;
+        this.p = p;
+        this.lo = lo;
+        this.hi = hi;
+    }
+    protected void compute() {
+        if(hi - lo <= BATCH) {
+            solveBatch();
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        invokeAll(new SolveTask(as, bs, xs, p, lo, mid), new SolveTask(as, bs, xs, p, mid, hi));
+    }
+    // c[i] = a[lo] * ... * a[i] (mod p) として, c[hi-1] の逆元だけを modInverse で求め, 
+    // 後ろから a[i]^-1 = c[i]^-1 * c[i-1], c[i-1]^-1 = c[i]^-1 * a[i] と順にたどる
+    void solveBatch() {
+        BigInteger [] c = new BigInteger[hi - lo];
+        BigInteger [] ar = new BigInteger[hi - lo]; // a[i] mod p
+        BigInteger acc = BigInteger.ONE;
+        for(int i = lo; i < hi; i++) {
+            BigInteger a = ar[i - lo] = as[i].mod(p);
+            if(a.signum() != 0) acc = acc.multiply(a).mod(p); // a ≡ 0 の要素は積に含めない
+            c[i - lo] = acc;
+        }
+        BigInteger inv = acc.modInverse(p); // ここだけが逆元の計算
+        for(int i = hi - 1; i >= lo; i--) {
+            BigInteger a = ar[i - lo];
+            if(a.signum() == 0) { // a ≡ 0 なら b ≡ 0 のはずで, どの x でもよいので 0
+                xs[i] = BigInteger.ZERO;
+                continue;
+            }
+            BigInteger prev = i > lo ? c[i - lo - 1] : BigInteger.ONE;
+            BigInteger ai = inv.multiply(prev).mod(p); // a[i]^-1
+            xs[i] = bs[i].multiply(ai).mod(p);
+            inv = inv.multiply(a).mod(p);              // c[i-1]^-1
+        }
+    }
+}
 
 class BigIntegerMethods {
+    // BigInteger.parallelMultiply（Java 19 以降）. なければ null
+    static final Method PARALLEL_MULTIPLY = findParallelMultiply();
+    // これより大きい（ビット数）同士の積は parallelMultiply を使う
+    static final int PARALLEL_MULTIPLY_BITS = 1 << 15;
+
+    static Method findParallelMultiply() {
+        try {
+            return BigInteger.class.getMethod("parallelMultiply", BigInteger.class);
+        } catch(NoSuchMethodException e) {
+            return null;
+        }
+    }
+    // 積を求める. 十分大きく, parallelMultiply が使えるならそれで
+    static BigInteger multiply(BigInteger a, BigInteger b) {
+        if(PARALLEL_MULTIPLY != null
+           && a.bitLength() >= PARALLEL_MULTIPLY_BITS && b.bitLength() >= PARALLEL_MULTIPLY_BITS) {
+            try {
+                return (BigInteger)PARALLEL_MULTIPLY.invoke(a, b);
+            } catch(ReflectiveOperationException e) {
+            }
+        }
+        return a.multiply(b);
+    }
+    // bis[lo..hi) の積を積の木で求める
+    static BigInteger productTree(BigInteger [] bis, int lo, int hi) {
+        if(hi - lo <= ProductTask.LEAF) return new ProductTask(bis, lo, hi).compute(); // 小さければそのまま
+        return ForkJoinPool.commonPool().invoke(new ProductTask(bis, lo, hi));
+    }
+
+    // 配列の和・最大値・偶数の個数を1回の走査で並列に求める
+    static BigIntegerStats stats(BigInteger [] bis) {
+        StatsTask t = new StatsTask(bis, null, 0, bis.length);
+        return bis.length <= StatsTask.LEAF ? t.compute() : ForkJoinPool.commonPool().invoke(t);
+    }
+    // 空白区切り（改行も可）の10進数の列を読みながら集計する. 全体をメモリに置かずに済む
+    // CHUNK 個ずつ区切り, 読み込みと前の区切りの変換・集計を重ねて行う
+    static final int CHUNK = 1 << 16;
+    static BigIntegerStats stats(BufferedReader br) throws IOException {
+        BigIntegerStats total = new BigIntegerStats();
+        ForkJoinTask<BigIntegerStats> pending = null; // 集計中の区切り
+        String [] chunk = new String[CHUNK];
+        int k = 0;
+        String line;
+        while((line = br.readLine()) != null) {
+            StringTokenizer st = new StringTokenizer(line);
+            while(st.hasMoreTokens()) {
+                chunk[k++] = st.nextToken();
+                if(k == CHUNK) {
+                    if(pending != null) total.combine(pending.join());
+                    pending = ForkJoinPool.commonPool().submit(new StatsTask(null, chunk, 0, k));
+                    chunk = new String[CHUNK];
+                    k = 0;
+                }
+            }
+        }
+        if(pending != null) total.combine(pending.join());
+        return total.combine(ForkJoinPool.commonPool().invoke(new StatsTask(null, chunk, 0, k)));
+    }
     // 配列の和を求める
     BigInteger sum(BigInteger [] bis) {
-        BigInteger s = BigInteger.ZERO; // 0定数
-        for(BigInteger bi : bis) { // 各要素について
-            s = s.add(bi); // s の加算メソッドを使う
-        }
-        return s;
+        return stats(bis).getSum();
     }
     // 配列の積を求める
+    // 1つの累積に順に掛けていくと, 累積だけが大きくなって小さな数との積ばかりになるので, 積の木で求める
     BigInteger prod(BigInteger [] bis) {
-        BigInteger s = BigInteger.ONE;
-        for(BigInteger bi: bis){
-            s = s.multiply(bi);
-        }
-        return s;
+        return productTree(bis, 0, bis.length);
     }
-    // 配列の最大値を求める
+    // 配列の最大値を求める（0 以下しかなければ null）
     BigInteger maximum(BigInteger [] bis) {
-        BigInteger s = BigInteger.ZERO;
-        for(BigInteger bi:bis){
-            s = s.max(bi);
-        }
-        if(s.compareTo(BigInteger.ZERO)==0){
+        BigInteger s = stats(bis).max;
+        if(s == null || s.signum() <= 0){
             return null;
         }else{
             return s;
@@ -31,46 +232,80 @@ class BigIntegerMethods {
     }
     // 配列の中の、偶数の数を返す
     int numEvens(BigInteger [] bis) {
-        int count = 0;
-        BigInteger s = BigInteger.ZERO;
-        for(BigInteger bi:bis){
-            if(bi.remainder(BigInteger.valueOf(2)) == BigInteger.ZERO){
-                count++;
-            }
-        }
-        return count;
+        return (int)stats(bis).evens;
     }    
     // 階乗 n! を求める
+    // prime swing 法: n! = ((n/2)!)^2 * swing(n), swing(n) = n! / ((n/2)!)^2 を使って再帰的に求める. 
+    // swing(n) は素数のべきの積で書けるので, その積を積の木で求める. 
     BigInteger fact(int n) {
-        BigInteger s = BigInteger.ONE;
-        for(int i=n;i>0;i--){
-            s = s.multiply(BigInteger.valueOf(i));
+        return fact(n, n < 20 ? null : sieve(n)); // ふるいは最初に一度だけ作り, 再帰の各段で使い回す
+    }
+    // composite は n 以上まで作ったふるい（n < 20 なら使わない）
+    static BigInteger fact(int n, boolean [] composite) {
+        if(n < 20) { // long に収まる範囲は順に掛ける
+            long s = 1;
+            for(int i=n;i>0;i--){
+                s *= i;
+            }
+            return BigInteger.valueOf(s);
         }
-        return s;
+        BigInteger h = fact(n / 2, composite);
+        return multiply(multiply(h, h), swing(n, composite));
     }
-    // 大きい順に並べる。配列は上書きで。
-    void sort(BigInteger [] bis) { // O(n^2) sort
-        int count=0;
-        BigInteger swap = BigInteger.ZERO;
-        for(BigInteger bi:bis){
-            count++;
+    // n 以下の合成数に true を付けた表（エラトステネスのふるい）
+    static boolean [] sieve(int n) {
+        boolean [] composite = new boolean[n + 1];
+        for(long i = 2; i * i <= n; i++) {
+            if(composite[(int)i]) continue;
+            for(long j = i * i; j <= n; j += i) composite[(int)j] = true;
         }
-        for(int i=0;i<count-1;i++){
-            for(int j=count-1;j>i;j--){
-                if(bis[j].compareTo(bis[j-1]) == 1){
-                    swap = bis[j];
-                    bis[j] = bis[j-1];
-                    bis[j-1] = swap;
-                }
+        return composite;
+    }
+    // swing(n) = n! / ((n/2)!)^2 を求める. composite は n 以上まで作ったふるい
+    // swing(n) の素因数 p の指数は floor(n/p^k) の奇数の個数で, p^指数 <= n となる
+    static BigInteger swing(int n, boolean [] composite) {
+        ArrayList<BigInteger> factors = new ArrayList<BigInteger>();
+        long acc = 1; // long に収まる間はまとめておく
+        for(int p = 2; p <= n; p++) {
+            if(composite[p]) continue;
+            long pe = 1;
+            for(int q = n / p; q > 0; q /= p) {
+                if((q & 1) == 1) pe *= p;
+            }
+            if(pe == 1) continue;
+            if(acc > Long.MAX_VALUE / pe) {
+                factors.add(BigInteger.valueOf(acc));
+                acc = 1;
             }
+            acc *= pe;
         }
+        factors.add(BigInteger.valueOf(acc));
+        BigInteger [] fs = factors.toArray(new BigInteger[0]);
+        return productTree(fs, 0, fs.length);
+    }
+    // 大きい順に並べる。配列は上書きで。
+    // Arrays.parallelSort は, 分けた部分を fork/join で並列に整列して併合するマージソート
+    void sort(BigInteger [] bis) {
+        Arrays.parallelSort(bis, Collections.reverseOrder());
     }
     // おまけ
     // 与えられた a, b, p （a ≠ 0, p は素数） に対して、
     // a * x ≡ b (mod p) を満たす x (0 <= x < p) を返す。
     // そのような x が必ず存在すると仮定して良い
+    // x = b * a^-1 (mod p). a ≡ 0 (mod p) のとき（b ≡ 0 でどの x でもよい）は 0
     BigInteger solve(BigInteger a, BigInteger b, BigInteger p) {
-        return BigInteger.ZERO;
+        a = a.mod(p);
+        if(a.signum() == 0) return BigInteger.ZERO;
+        return b.multiply(a.modInverse(p)).mod(p);
+    }
+    // 同じ素数 p について, 多数の a[i] * x ≡ b[i] (mod p) をまとめて解き, x[i] の配列を返す
+    // SolveTask.BATCH 個ごとに modInverse は1回で済み, まとまりごとに並列に解く
+    static BigInteger [] solveAll(BigInteger [] as, BigInteger [] bs, BigInteger p) {
+        BigInteger [] xs = new BigInteger[as.length];
+        SolveTask t = new SolveTask(as, bs, xs, p, 0, as.length);
+        if(as.length <= SolveTask.BATCH) t.compute();
+        else ForkJoinPool.commonPool().invoke(t);
+        return xs;
     }
 
     // 配列出力用
@@ -84,7 +319,14 @@ class BigIntegerMethods {
         sb.append("}");
         return sb.toString();
     }
-    public static void main(String [] args) {
+    public static void main(String [] args) throws IOException {
+        // java BigIntegerMethods file とすると, ファイル中の整数の列を集計して表示する
+        if(args.length > 0) {
+            try(BufferedReader br = new BufferedReader(new FileReader(args[0]))) {
+                System.out.println(stats(br));
+            }
+            return;
+        }
         // テスト用のコードはこの main に書いて
         // java BigIntegerMethods とすれば実行できる
         // 適宜自分でテストを書いて自分のコードの動作確認をすること
@@ -0,0 +1,75 @@
+import java.util.*;
+/**
+ * スタートから位置 {@code p} を経てゴールに至る経路の長さを，{@code p} からゴールまでの距離の見積もりで補って，
+ * 短そうな経路から順に調べる解法（A*）．
+ * 見積もりが実際の距離を超えない（かつ，隣の位置との見積もりの差が 1 以下である）限り，最短経路が求まる．
+ * 見積もりが正確なほど，調べる位置は少なくなる．
+ */
+public class AStarMazeSolver {
+    /**
+     * 調べる候補の位置．スタートからの距離 {@code g} と，それに見積もりを足した {@code f} を持つ．
+     */
+    private static class Node<Pos> {
+        final Pos p;
+        final int g, f;
+        Node(Pos p, int g, int f) {
+            this.p = p;
+            this.g = g;
+            this.f = f;
+        }
+    }
+    public static <Pos> SearchResult<Pos> solve(Maze<Pos> m, Heuristic<Pos> h) {
+        SearchResult<Pos> r = new SearchResult<Pos>("astar"); // 探索の統計
+        // 「ある位置に、どの位置から来たか？」を記録する連想配列
+        HashMap<Pos, Pos> prev = new HashMap<Pos, Pos>();
+        // これまでに見つかった，スタートから各位置までの最短の距離
+        HashMap<Pos, Integer> dist = new HashMap<Pos, Integer>();
+        // これからチェックすべき位置を，f の小さい順（同じなら g の大きい順，つまりゴールに近そうな順）に取り出すヒープ
+        PriorityQueue<Node<Pos>> open = new PriorityQueue<Node<Pos>>(new Comparator<Node<Pos>>() {
+            public int compare(Node<Pos> a, Node<Pos> b) {
+                return a.f != b.f ? Integer.compare(a.f, b.f) : Integer.compare(b.g, a.g);
+            }
+        });
+        // 隣の位置 n を調べる訪問者．今までより短く着けるなら，距離と from から来たことを記録してヒープに入れる
+        class Expand implements NeighborVisitor<Pos> {
+            Pos from;
+            int g; // from の距離
+            public void visit(Pos n) {
+                Integer d = dist.get(n);
+                if(d == null || g + 1 < d) {
+                    n = m.copy(n); // 迷路が位置を使い回していても保持できるように
+                    dist.put(n, g + 1);
+                    prev.put(n, from);
+                    open.add(new Node<Pos>(n, g + 1, g + 1 + h.estimate(n)));
+                    r.frontier(open.size());
+                }
+            }
+        }
+        Expand expand = new Expand();
+        Pos st = m.getStart(); // スタート位置
+        dist.put(st, 0);
+        prev.put(st, null);
+        open.add(new Node<Pos>(st, 0, h.estimate(st)));
+        while(open.size() > 0) {
+            Node<Pos> c = open.remove();
+            if(c.g > dist.get(c.p)) continue; // より短い距離で入れ直された古い候補
+            if(m.isGoal(c.p)) { // ゴールに辿り着いたか？
+                // ゴールに着いたら、そこに至る経路を逆向きにたどる
+                ArrayList<Pos> ps = new ArrayList<Pos>();
+                for(Pos p = c.p; p != null; p = prev.get(p)) {
+                    ps.add(p);
+                }
+                Collections.reverse(ps); // 経路を正しい向きに直す
+                r.finish(ps, dist.size());
+                m.printAnswer(ps); // 答えを出力
+                return r;
+            }
+            r.expanded++;
+            expand.from = c.p;
+            expand.g = c.g;
+            m.forEachNeighbor(c.p, expand);
+        }
+        System.out.println("impossible");
+        return r.finish(null, dist.size());
+    }
+}
@@ -1,12 +1,28 @@
 import java.util.*;
 public class BFSMazeSolver {
-    public static <Pos> void solve(Maze<Pos> m) {
+    public static <Pos> SearchResult<Pos> solve(Maze<Pos> m) {
+        SearchResult<Pos> r = new SearchResult<Pos>("bfs"); // 探索の統計
         // 「ある位置に、どの位置から来たか？」を記録する連想配列
         HashMap<Pos, Pos> prev = new HashMap<Pos, Pos>();
         // これからチェックすべき位置のキュー
         LinkedList<Pos> que = new LinkedList<Pos>();
         // キューに入れたことのある位置の集まり
         HashSet<Pos> seen = new HashSet<Pos>();
+        // 隣の位置 n を調べる訪問者．まだ入れてないなら入れて，from から来たと記録する．
+        // 探索全体でひとつだけ作り，from を書き換えながら使い回す
+        class Expand implements NeighborVisitor<Pos> {
+            Pos from;
+            public void visit(Pos n) {
+                if(!seen.contains(n)) {
+                    n = m.copy(n); // 迷路が位置を使い回していても保持できるように
+                    que.add(n);
+                    r.frontier(que.size());
+                    seen.add(n);
+                    prev.put(n, from); // n への移動は from からであった、という記録
+                }
+            }
+        }
+        Expand expand = new Expand();
         Pos st = m.getStart(); // スタート位置
         que.add(m.getStart()); // スタート位置をキューに追加
         seen.add(m.getStart()); // スタート位置をキューに入れたと記憶
@@ -19,18 +35,15 @@ public class BFSMazeSolver {
                     ps.add(c);
                 }
                 Collections.reverse(ps); // 経路を正しい向きに直す
+                r.finish(ps, seen.size());
                 m.printAnswer(ps); // 答えを出力
-                return;
-            }
-            List<Pos> ns = m.getNeighbors(p); // 隣の位置を取得
-            for( Pos n : ns ) { // 移動できる隣の位置 n の全てについて
-                if(!seen.contains(n)) { // まだキューに入れてないなら
-                    que.add(n);  // キューに入れて、そのうち探索
-                    seen.add(n);
-                    prev.put(n, p); // n への移動は p からであった、という記録
-                }
+                return r;
             }
+            expand.from = p;
+            r.expanded++;
+            m.forEachNeighbor(p, expand); // 隣の位置をリストにせずに一つずつ調べる
         }
         System.out.println("impossible");
+        return r.finish(null, seen.size());
     }
 }
\ No newline at end of file
@@ -0,0 +1,108 @@
+import java.util.*;
+/**
+ * スタートとゴールの両側から幅優先探索を進め，二つの探索が出会ったところで止める解法．
+ * 片側だけの幅優先探索は，ゴールまでの距離 d の範囲を全て調べてしまうが，
+ * 両側から d/2 ずつ進めれば，開けた迷路やグラフでは調べる位置がずっと少なくて済む．<br>
+ * ゴールの側は {@code Maze.getGoals} の位置から {@code Maze.forEachPredecessor} で逆向きに進める．
+ * {@code getGoals} が {@code null} の迷路では {@code BFSMazeSolver} で解く．
+ */
+public class BidirectionalBFSMazeSolver {
+    public static <Pos> SearchResult<Pos> solve(Maze<Pos> m) {
+        List<Pos> goals = m.getGoals();
+        if(goals == null) { // ゴールが分からなければ逆向きに探索できない
+            return BFSMazeSolver.solve(m);
+        }
+        SearchResult<Pos> r = new SearchResult<Pos>("bidirectional-bfs"); // 探索の統計
+        Pos st = m.getStart(); // スタート位置
+        if(m.isGoal(st)) {
+            r.finish(Collections.singletonList(st), 1);
+            m.printAnswer(r.path);
+            return r;
+        }
+        // 「ある位置に、どの位置から来たか？」（スタート側）と
+        // 「ある位置から、どの位置へ行けばゴールに近づくか？」（ゴール側）を記録する連想配列
+        HashMap<Pos, Pos> prev = new HashMap<Pos, Pos>();
+        HashMap<Pos, Pos> next = new HashMap<Pos, Pos>();
+        // それぞれの側で，スタート（ゴール）からの距離．キューに入れたことのある位置の集まりも兼ねる
+        HashMap<Pos, Integer> distS = new HashMap<Pos, Integer>();
+        HashMap<Pos, Integer> distG = new HashMap<Pos, Integer>();
+        // それぞれの側で，次に広げる距離の位置の並び
+        ArrayList<Pos> frontS = new ArrayList<Pos>();
+        ArrayList<Pos> frontG = new ArrayList<Pos>();
+        frontS.add(st);
+        distS.put(st, 0);
+        prev.put(st, null);
+        for(Pos g : goals) {
+            frontG.add(g);
+            distG.put(g, 0);
+            next.put(g, null);
+        }
+        // 隣の位置 n を調べる訪問者．まだ入れてないなら入れて，from とつなぐ．
+        // 反対側で既に見つかっている位置なら，そこを通る経路の長さを調べ，最短なら出会った場所として覚えておく
+        class Expand implements NeighborVisitor<Pos> {
+            boolean forward; // スタート側を広げているか
+            Pos from;
+            int d; // from の距離
+            ArrayList<Pos> nextFront = new ArrayList<Pos>();
+            int best = Integer.MAX_VALUE; // 見つかった経路の長さの最小値
+            Pos meetS, meetG; // 最短の経路で，スタート側の位置 meetS から ゴール側の位置 meetG へ移動する
+            public void visit(Pos n) {
+                HashMap<Pos, Integer> mine = forward ? distS : distG;
+                if(mine.containsKey(n)) return;
+                n = m.copy(n); // 迷路が位置を使い回していても保持できるように
+                mine.put(n, d + 1);
+                if(forward) prev.put(n, from); else next.put(n, from);
+                nextFront.add(n);
+                Integer o = (forward ? distG : distS).get(n);
+                if(o != null && d + 1 + o < best) {
+                    best = d + 1 + o;
+                    meetS = forward ? from : n;
+                    meetG = forward ? n : from;
+                }
+            }
+        }
+        Expand expand = new Expand();
+        int dS = 0, dG = 0; // それぞれの側で，広げている位置の距離
+        // 一段分を広げ終えたときに出会っていれば，それが最短
+        while(expand.best == Integer.MAX_VALUE && frontS.size() > 0 && frontG.size() > 0) {
+            // 小さい方の側を一段分広げる
+            expand.forward = frontS.size() <= frontG.size();
+            ArrayList<Pos> front = expand.forward ? frontS : frontG;
+            expand.d = expand.forward ? dS : dG;
+            expand.nextFront = new ArrayList<Pos>();
+            r.expanded += front.size();
+            for(Pos p : front) {
+                expand.from = p;
+                if(expand.forward) {
+                    m.forEachNeighbor(p, expand); // p から移動できる位置
+                } else {
+                    m.forEachPredecessor(p, expand); // p へ移動できる位置
+                }
+            }
+            if(expand.forward) {
+                frontS = expand.nextFront;
+                dS++;
+            } else {
+                frontG = expand.nextFront;
+                dG++;
+            }
+            r.frontier(frontS.size() + frontG.size());
+        }
+        if(expand.best == Integer.MAX_VALUE) {
+            System.out.println("impossible");
+            return r.finish(null, distS.size() + distG.size());
+        }
+        // 出会った場所からスタート側を逆向きに，ゴール側を順にたどる
+        ArrayList<Pos> ps = new ArrayList<Pos>();
+        for(Pos c = expand.meetS; c != null; c = prev.get(c)) {
+            ps.add(c);
+        }
+        Collections.reverse(ps);
+        for(Pos c = expand.meetG; c != null; c = next.get(c)) {
+            ps.add(c);
+        }
+        r.finish(ps, distS.size() + distG.size());
+        m.printAnswer(ps); // 答えを出力
+        return r;
+    }
+}
@@ -4,27 +4,43 @@
 class DFSMazeRunner2 {
     public static void main(String [] args) throws Exception {
         if(args.length < 1) {
-            System.out.println("java DFSMazeRunner2 mazefile [-g | -w]");
+            System.out.println("java DFSMazeRunner2 mazefile [-g | -w] [-p] [-json | -csv]");
             System.out.println("  -w : the mazefile is of text-mazes with warps");
             System.out.println("  -g : the mazefile is of graph-mazes");
+            System.out.println("  -p : using multi-threaded BFS instead of DFS");
+            System.out.println("  -json, -csv : print search statistics in JSON / CSV after the answer");
             return;
         }
         boolean graph = false;
         boolean warp = false;
-        if(args.length >= 2) {
-            if(args[1].equals("-g")) graph = true;
-            if(args[1].equals("-w")) warp = true;
+        boolean parallel = false;
+        String stats = null; // 統計の出力形式
+        for(int i = 1; i < args.length; i++) {
+            if(args[i].equals("-g")) graph = true;
+            if(args[i].equals("-w")) warp = true;
+            if(args[i].equals("-p")) parallel = true;
+            if(args[i].equals("-json") || args[i].equals("-csv")) stats = args[i];
         }
-        // TextMaze も TextMazeWithWarp も GraphMaze も Maze<Pos> を実装するので、
-        // 全てに対して同じ DFSMazeSolver.solve を使うことができる。
+        // TextMaze も TextMazeWithWarp も GraphMaze も IntMaze を実装するので、
+        // 全てに対して同じ IntMazeSolver.solve を使うことができる。
+        // （DFSMazeSolver.solve と同じ経路を、位置をオブジェクトにせずに探す）
+        IntMaze m;
         if(!graph) {
             if(!warp) {
-                DFSMazeSolver.solve(new TextMaze(args[0]));
+                m = new TextMaze(args[0]);
             } else {
-                DFSMazeSolver.solve(new TextMazeWithWarp(args[0]));
+                m = new TextMazeWithWarp(args[0]);
             }
         } else {
-            DFSMazeSolver.solve(new GraphMaze(args[0]));
+            m = new GraphMaze(args[0]);
         }
+        SearchResult<Integer> r;
+        if(parallel) {
+            // 大きな迷路向けに，複数スレッドで一段ずつ幅優先探索をする
+            r = ParallelBFSMazeSolver.solve(m);
+        } else {
+            r = IntMazeSolver.solve(m, new IntStack());
+        }
+        r.printStats(args[0], stats);
     }
 }
@@ -0,0 +1,196 @@
+import java.util.*;
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+/**
+ * 迷路（{@code IntMaze}）の各位置からゴールまでの距離（移動の回数）の表．
+ * ゴールから逆向きに（{@code getPredecessors} で）一度だけ幅優先探索をして作る．
+ * 作ってしまえば，どのスタート位置からの最短経路も，距離が 1 ずつ減る隣の位置を選んでいくだけで，
+ * 経路の長さに比例する時間で求まる．同じ迷路に多くのスタート位置から問い合わせるときのためのもの．<br>
+ * 表は迷路ファイルの隣（{@code 迷路ファイル名 + ".dist"}）に保存しておき，次からはそれを読み込める．
+ */
+class DistanceField {
+    /**
+     * 保存するファイルの先頭に置く印（"MZD2"）．迷路のクラスを記録しない前の形式（"MZDF"）は読まない．
+     */
+    static final int MAGIC = 0x4D5A4432;
+    /**
+     * 保存したファイルの名前に付ける拡張子．
+     */
+    static final String SUFFIX = ".dist";
+    /**
+     * 迷路．
+     */
+    final IntMaze m;
+    /**
+     * 各位置からゴールまでの距離．ゴールに辿り着けない位置は -1．
+     */
+    final int [] dist;
+
+    /**
+     * 迷路と距離の表を受け取るコンストラクタ．
+     * @param m 迷路．
+     * @param dist 各位置からゴールまでの距離．
+     */
+    private DistanceField(IntMaze m, int [] dist) {
+        this.m = m;
+        this.dist = dist;
+    }
+    /**
+     * 全てのゴールから逆向きに幅優先探索をして，距離の表を作る．
+     * @param m 迷路．
+     * @return 距離の表．
+     */
+    static DistanceField build(IntMaze m) {
+        int n = m.size();
+        int [] dist = new int[n];
+        Arrays.fill(dist, -1);
+        IntQueue que = new IntQueue();
+        que.init();
+        for(int p = 0; p < n; p++) { // ゴールは全て距離 0
+            if(m.isGoal(p)) {
+                dist[p] = 0;
+                que.addValue(p);
+            }
+        }
+        int [] ns = new int[m.maxDegree()]; // 移動してくる位置を受け取る配列（使い回す）
+        while(que.size() > 0) {
+            int p = que.getValue();
+            int k = m.getPredecessors(p, ns);
+            for(int i = 0; i < k; i++) {
+                int q = ns[i];
+                if(dist[q] < 0) { // q から p へ移動できるので，q の距離は p の距離 + 1
+                    dist[q] = dist[p] + 1;
+                    que.addValue(q);
+                }
+            }
+        }
+        return new DistanceField(m, dist);
+    }
+    /**
+     * 迷路ファイルの隣に保存した表が新しければ読み込み，なければ（古ければ）作って保存する．
+     * 保存できなくても（書き込めない場所など），作った表はそのまま返す．
+     * @param m 迷路．
+     * @param mazeFile 迷路ファイル名．
+     * @return 距離の表．
+     */
+    static DistanceField of(IntMaze m, String mazeFile) {
+        File maze = new File(mazeFile);
+        String file = mazeFile + SUFFIX;
+        try {
+            DistanceField f = load(m, file, maze.length(), maze.lastModified());
+            if(f != null) return f;
+        } catch(IOException e) { // 読めなければ作り直す
+        }
+        DistanceField f = build(m);
+        try {
+            f.save(file, maze.length(), maze.lastModified());
+        } catch(IOException e) {
+            System.err.println("cannot save " + file + ": " + e.getMessage());
+        }
+        return f;
+    }
+    /**
+     * 表をファイルに保存する．形式は，印，位置の数，迷路ファイルの大きさと更新時刻，
+     * 迷路のクラス名（バイト数と UTF-8 のバイト列），各位置の距離（int）の順．
+     * 同じ迷路ファイルでも読み方（ワープの有無など）で隣の位置が変わるので，クラス名も記録する．
+     * @param file 保存先のファイル名．
+     * @param mazeLength 迷路ファイルの大きさ．
+     * @param mazeModified 迷路ファイルの更新時刻．
+     */
+    void save(String file, long mazeLength, long mazeModified) throws IOException {
+        try(FileChannel ch = FileChannel.open(Paths.get(file), StandardOpenOption.CREATE,
+                                              StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer b = ByteBuffer.allocate(1 << 16);
+            byte [] kind = m.getClass().getName().getBytes(StandardCharsets.UTF_8);
+            b.putInt(MAGIC).putInt(dist.length).putLong(mazeLength).putLong(mazeModified);
+            b.putInt(kind.length).put(kind);
+            int i = 0;
+            while(i < dist.length || b.position() > 0) {
+                int k = Math.min(b.remaining() / 4, dist.length - i);
+                b.asIntBuffer().put(dist, i, k);
+                b.position(b.position() + 4 * k);
+                i += k;
+                b.flip();
+                while(b.hasRemaining()) ch.write(b);
+                b.clear();
+            }
+        }
+    }
+    /**
+     * ファイルに保存した表を読み込む．迷路と合わなければ {@code null} を返す．
+     * @param m 迷路．
+     * @param file 保存したファイル名．
+     * @param mazeLength 迷路ファイルの大きさ．
+     * @param mazeModified 迷路ファイルの更新時刻．
+     * @return 距離の表．ファイルがないか，迷路と合わなければ {@code null}．
+     */
+    static DistanceField load(IntMaze m, String file, long mazeLength, long mazeModified) throws IOException {
+        if(!new File(file).exists()) return null;
+        try(FileChannel ch = FileChannel.open(Paths.get(file), StandardOpenOption.READ)) {
+            ByteBuffer b = ByteBuffer.allocate(1 << 16);
+            byte [] kind = m.getClass().getName().getBytes(StandardCharsets.UTF_8);
+            b.limit(28 + kind.length);
+            while(b.hasRemaining()) {
+                if(ch.read(b) < 0) return null;
+            }
+            b.flip();
+            if(b.getInt() != MAGIC || b.getInt() != m.size() || b.getLong() != mazeLength || b.getLong() != mazeModified) {
+                return null; // 別の迷路か，迷路ファイルが変わった
+            }
+            byte [] saved = new byte[kind.length];
+            if(b.getInt() != kind.length) return null; // 同じファイルを別の迷路として（ワープの有無を変えてなど）読んだもの
+            b.get(saved);
+            if(!Arrays.equals(saved, kind)) return null;
+            int [] dist = new int[m.size()];
+            int i = 0;
+            b.clear();
+            while(i < dist.length) {
+                if(ch.read(b) < 0) return null; // 途中で切れている
+                b.flip();
+                int k = Math.min(b.remaining() / 4, dist.length - i);
+                b.asIntBuffer().get(dist, i, k);
+                b.position(4 * k);
+                i += k;
+                b.compact();
+            }
+            return new DistanceField(m, dist);
+        }
+    }
+    /**
+     * 位置{@code p}からゴールまでの距離を返す．
+     * @param p 指定位置．
+     * @return ゴールまでの距離．辿り着けなければ -1．
+     */
+    int distance(int p) {
+        return dist[p];
+    }
+    /**
+     * 位置{@code start}からゴールへの最短経路を返す．
+     * 距離が 1 ずつ減る隣の位置を選んでいくので，隣の位置を調べるのは経路の長さの回数だけ．
+     * @param start スタート位置．
+     * @return {@code start} からゴールへの位置の並び．辿り着けなければ {@code null}．
+     * @throws IllegalStateException 距離が 1 減る隣がなかった場合（表が迷路と合っていない）．
+     */
+    int [] path(int start) {
+        if(dist[start] < 0) return null;
+        int [] ps = new int[dist[start] + 1];
+        int [] ns = new int[m.maxDegree()];
+        ps[0] = start;
+        for(int i = 1; i < ps.length; i++) {
+            int p = ps[i - 1];
+            int k = m.getNeighbors(p, ns);
+            int next = -1;
+            for(int j = 0; j < k && next < 0; j++) {
+                if(dist[ns[j]] == dist[p] - 1) next = ns[j];
+            }
+            if(next < 0) { // 距離 d の位置には，距離 d - 1 の隣が必ずあるはず
+                throw new IllegalStateException("stale distance field: no neighbor of " + p + " at distance " + (dist[p] - 1));
+            }
+            ps[i] = next;
+        }
+        return ps;
+    }
+}
@@ -0,0 +1,69 @@
+import java.util.*;
+import java.io.*;
+/**
+ * 一つの迷路に，ファイルに並べた多くのスタート位置から問い合わせ，それぞれの最短経路を表示する{@code main} をもつ．
+ * 探索はゴールからの一度だけで（{@code DistanceField}），各スタート位置の経路は距離の表をたどって求める．<br>
+ * スタート位置のファイルは1行に一つで，テキストの迷路なら「行 列」（0 始まり），グラフの迷路ならノード名．
+ * '#' で始まる行と空行は読み飛ばす．
+ */
+class DistanceFieldRunner {
+    public static void main(String [] args) throws Exception {
+        if(args.length < 2) {
+            System.out.println("java DistanceFieldRunner mazefile startsfile [-g | -w] [-save]");
+            System.out.println("  -w : the mazefile is of text-mazes with warps");
+            System.out.println("  -g : the mazefile is of graph-mazes");
+            System.out.println("  -save : keep the distance field in mazefile" + DistanceField.SUFFIX + " and reuse it next time");
+            return;
+        }
+        boolean graph = false;
+        boolean warp = false;
+        boolean save = false;
+        for(int i = 2; i < args.length; i++) {
+            if(args[i].equals("-g")) graph = true;
+            if(args[i].equals("-w")) warp = true;
+            if(args[i].equals("-save")) save = true;
+        }
+        IntMaze m;
+        if(!graph) {
+            if(!warp) {
+                m = new TextMaze(args[0]);
+            } else {
+                m = new TextMazeWithWarp(args[0]);
+            }
+        } else {
+            m = new GraphMaze(args[0]);
+        }
+        DistanceField f = save ? DistanceField.of(m, args[0]) : DistanceField.build(m);
+        BufferedReader br = new BufferedReader(new FileReader(args[1]));
+        for(String line = br.readLine(); line != null; line = br.readLine()) {
+            line = line.trim();
+            if(line.isEmpty() || line.startsWith("#")) continue;
+            int st = startId(m, line);
+            System.out.println("# start: " + line);
+            int [] ps = st < 0 ? null : f.path(st);
+            if(ps == null) {
+                System.out.println("impossible");
+            } else {
+                m.printAnswer(ps);
+            }
+        }
+        br.close();
+    }
+    /**
+     * スタート位置のファイルの1行を，迷路の位置にする．
+     * @param m 迷路．
+     * @param line 「行 列」またはノード名．
+     * @return 位置．迷路にない位置なら -1．
+     */
+    static int startId(IntMaze m, String line) {
+        if(m instanceof GraphMaze) {
+            return ((GraphMaze)m).idOf(line);
+        }
+        TextMaze tm = (TextMaze)m;
+        StringTokenizer st = new StringTokenizer(line);
+        int i = Integer.parseInt(st.nextToken());
+        int j = Integer.parseInt(st.nextToken());
+        if(i < 0 || j < 0 || i >= tm.h || j >= tm.w) return -1;
+        return i * tm.w + j;
+    }
+}
@@ -0,0 +1,368 @@
+import java.util.*;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.*;
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+/**
+ * グラフ迷路のファイル（形式は {@code GraphMaze} を参照）を読み込み，
+ * ノード名の表と CSR 形式の隣接情報を作るクラス．<br>
+ * ファイルはメモリに map してバイトのまま走査し，行やトークンごとの String は作らない．
+ * エッジの部分はファイル上で分割し，1回目は区切りごとに並列にノード名を番号に直して，各ノードの次数を共有の配列に数える．
+ * 2回目はもう一度ファイル中の順に走査して番号に直し，隣接ノードを詰める（ノードごとの並びをファイル中の順にするため）．
+ * 番号の並びは持っておかないので，作業用のメモリはノード数に比例する分だけで済む．<br>
+ * ノード名は UTF-8 のバイト列のまま一つの配列に詰めて持ち，番号との対応は開番地法のハッシュ表で引く．
+ */
+class GraphFile {
+    /**
+     * ノード数．
+     */
+    final int n;
+    /**
+     * エッジ数．
+     */
+    final int m;
+    /**
+     * ノード {@code u} につながるノードは {@code targets[offsets[u]]} から {@code targets[offsets[u+1]-1]} まで．
+     * 並びはファイル中のエッジの順．
+     */
+    final int [] offsets;
+    /**
+     * つながるノードの番号を，ノードごとにまとめて並べた配列．
+     */
+    final int [] targets;
+    /**
+     * つながるノードの数の最大値．
+     */
+    final int maxDeg;
+    /**
+     * 全ノード名の UTF-8 のバイト列を番号順につなげたもの．
+     */
+    private byte [] pool;
+    /**
+     * ノード {@code u} の名前は {@code pool[nameStart[u]]} から {@code pool[nameStart[u+1]-1]} まで．
+     */
+    private int [] nameStart;
+    /**
+     * ノード名のハッシュ表．値はノード番号 + 1（0 は空き）．長さは 2 のべき．
+     */
+    private int [] table;
+    /**
+     * 1つの map の大きさの上限．
+     */
+    static final int SEGMENT = 1 << 30;
+    /**
+     * エッジの部分で，まとめて番号に直すノード名の数．
+     */
+    static final int BATCH = 256;
+    /**
+     * ノード数の上限．ハッシュ表の大きさ（ノード数の2倍以上の 2 のべき）が int に収まる範囲．
+     */
+    static final int MAX_NODES = 1 << 29;
+
+    /**
+     * 番号に直したノード名を {@code BATCH} 個ずつ受け取る処理．
+     */
+    private interface IdSink {
+        /**
+         * @param ids エッジの両端のノード番号を順に並べたもの．
+         * @param t 有効な個数（偶数）．
+         */
+        void accept(int [] ids, int t);
+    }
+
+    /**
+     * ファイル名を受け取り，グラフを読み込むコンストラクタ．
+     * @param file ファイル名（パス）の文字列．
+     */
+    GraphFile(String file) throws IOException {
+        List<ByteBuffer> segs = map(file);
+        // ヘッダ（ノード数とエッジ数）とノード名は先頭から順に読む
+        int seg = 0;
+        ByteBuffer b = segs.get(0);
+        int pos = 0;
+        long [] hdr = new long[2];
+        pos = skipBlank(b, pos, b.limit());
+        for(int k = 0; k < 2; k++) {
+            long v = 0;
+            int st = pos;
+            while(pos < b.limit() && b.get(pos) >= '0' && b.get(pos) <= '9') {
+                if(v <= Integer.MAX_VALUE) v = v * 10 + (b.get(pos) - '0'); // 大きすぎる値は下で弾くので，それ以上は読み捨てる
+                pos++;
+            }
+            if(pos == st) throw new IOException(file + ": bad header");
+            hdr[k] = v;
+            while(pos < b.limit() && (b.get(pos) == ' ' || b.get(pos) == '\t')) pos++;
+        }
+        // ノード番号・隣接ノードの位置（offsets）は int なので，収まらない大きさは読まずに断る
+        if(hdr[0] > MAX_NODES) throw new IOException(file + ": too many nodes: " + hdr[0] + " (max " + MAX_NODES + ")");
+        if(2 * hdr[1] > Integer.MAX_VALUE - 8) throw new IOException(file + ": too many edges: " + hdr[1] + " (max " + (Integer.MAX_VALUE - 8) / 2 + ")");
+        // ノード名は1つにつき少なくとも1行，エッジも1本につき少なくとも3バイトあるので，ファイルの大きさを超える数はありえない．
+        // 数に比例する配列を確保する前に断る
+        long size = 0;
+        for(ByteBuffer sb : segs) size += sb.limit();
+        if(hdr[0] > size || 2 * hdr[1] > size) {
+            throw new IOException(file + ": header says " + hdr[0] + " nodes and " + hdr[1] + " edges, but the file has only " + size + " bytes");
+        }
+        n = (int)hdr[0];
+        m = (int)hdr[1];
+        pos = nextLine(b, pos);
+        nameStart = new int[n + 1];
+        ByteArrayOutputStream names = new ByteArrayOutputStream();
+        for(int i = 0; i < n; i++) {
+            while(pos >= b.limit()) { // 区切りは行の境目なので，行の途中で次の区切りに移ることはない
+                if(++seg == segs.size()) throw new IOException(file + ": too few nodes");
+                b = segs.get(seg);
+                pos = 0;
+            }
+            int e = pos;
+            while(e < b.limit() && b.get(e) != '\n' && b.get(e) != '\r') e++;
+            for(int k = pos; k < e; k++) names.write(b.get(k));
+            nameStart[i + 1] = names.size();
+            pos = nextLine(b, e);
+        }
+        pool = names.toByteArray();
+        buildTable();
+        // 残りがエッジの部分．並列に走査できるように行の境目で分ける
+        List<int []> chunks = new ArrayList<int []>(); // {区切りの番号, 開始位置, 終了位置}
+        int par = Math.max(1, Runtime.getRuntime().availableProcessors());
+        for(int s = seg; s < segs.size(); s++) {
+            ByteBuffer sb = segs.get(s);
+            int from = s == seg ? pos : 0;
+            int to = sb.limit();
+            int step = Math.max((to - from) / par + 1, 1 << 16);
+            while(from < to) {
+                int e = from + step >= to ? to : nextLine(sb, from + step);
+                chunks.add(new int[] {s, from, e});
+                from = e;
+            }
+        }
+        // 1回目: 区切りごとに並列にノード名を番号に直し，各ノードの次数を数える
+        final AtomicIntegerArray deg = new AtomicIntegerArray(n);
+        final List<ByteBuffer> fsegs = segs;
+        final List<int []> fchunks = chunks;
+        try {
+            IntStream.range(0, chunks.size()).parallel().forEach(c -> {
+                int [] ch = fchunks.get(c);
+                scanEdges(fsegs.get(ch[0]).duplicate(), ch[1], ch[2], (ids, t) -> {
+                    for(int j = 0; j < t; j++) deg.incrementAndGet(ids[j]);
+                });
+            });
+        } catch(UncheckedIOException e) { // 知らないノード名があった
+            throw new IOException(file + ": " + e.getCause().getMessage());
+        }
+        // 各ノードの開始位置を求める．ヘッダより多いエッジがあっても溢れないよう long で足す
+        offsets = new int[n + 1];
+        long total = 0;
+        int md = 0;
+        for(int u = 0; u < n; u++) {
+            int d = deg.get(u);
+            offsets[u] = (int)total;
+            total += d;
+            md = Math.max(md, d);
+        }
+        if(total != 2L * m) throw new IOException(file + ": expected " + m + " edges, found " + total / 2);
+        offsets[n] = (int)total;
+        maxDeg = md;
+        // 2回目: ファイル中の順に走査し直して隣接ノードを詰める．ノードごとにはファイル中のエッジの順になる
+        final int [] tg = new int[offsets[n]];
+        final int [] next = Arrays.copyOf(offsets, n); // 各ノードの次の書き込み位置
+        IdSink fill = (ids, t) -> {
+            for(int j = 0; j < t; j += 2) {
+                tg[next[ids[j]]++] = ids[j + 1];
+                tg[next[ids[j + 1]]++] = ids[j];
+            }
+        };
+        for(int [] ch : chunks) scanEdges(segs.get(ch[0]).duplicate(), ch[1], ch[2], fill);
+        targets = tg;
+    }
+    /**
+     * ファイルを行の境目で {@code SEGMENT} 以下の大きさに区切り，それぞれを map する．
+     * @param file ファイル名．
+     * @return map した区切りの並び．
+     */
+    static List<ByteBuffer> map(String file) throws IOException {
+        ArrayList<ByteBuffer> segs = new ArrayList<ByteBuffer>();
+        try(FileChannel ch = FileChannel.open(Paths.get(file), StandardOpenOption.READ)) {
+            long size = ch.size();
+            long pos = 0;
+            while(pos < size) {
+                long len = Math.min(SEGMENT, size - pos);
+                MappedByteBuffer mb = ch.map(FileChannel.MapMode.READ_ONLY, pos, len);
+                int e = (int)len;
+                if(pos + len < size) { // 最後の改行までにする
+                    while(e > 0 && mb.get(e - 1) != '\n') e--;
+                    if(e == 0) throw new IOException(file + ": line too long");
+                }
+                mb.limit(e);
+                segs.add(mb);
+                pos += e;
+            }
+        }
+        if(segs.isEmpty()) segs.add(ByteBuffer.allocate(0));
+        return segs;
+    }
+    /**
+     * エッジの部分の {@code [from, to)} を走査し，各エッジの両端のノード番号を順に {@code sink} に渡す．
+     * ノード名は {@code BATCH} 個ずつまとめて番号に直す（{@code lookupAll}）．
+     */
+    private void scanEdges(ByteBuffer b, int from, int to, IdSink sink) {
+        int [] ids = new int[BATCH];
+        int [] st = new int[BATCH], en = new int[BATCH], hs = new int[BATCH], pre = new int[BATCH];
+        int t = 0;
+        int i = skipBlank(b, from, to);
+        while(i < to) {
+            for(int j = 0; j < 2; j++) { // 1行にノード名が2つ
+                st[t] = i;
+                while(i < to && !isSpace(b.get(i))) i++;
+                en[t++] = i;
+                while(i < to && (b.get(i) == ' ' || b.get(i) == '\t')) i++;
+            }
+            i = skipBlank(b, nextLine(b, i, to), to);
+            if(t == BATCH || i >= to) {
+                lookupAll(b, st, en, hs, pre, t, ids);
+                sink.accept(ids, t);
+                t = 0;
+            }
+        }
+    }
+    /**
+     * ノード名 {@code b[st[j], en[j])}（{@code j < t}）の番号を {@code out[j]} に入れる．
+     * 1つずつ引くと，表・名前の開始位置・名前のバイト列の読み出しが順に待たされるので，
+     * 段ごとに全てのノード名についてまとめて読み出し，待ち時間を重ねる．
+     * 最初の候補の名前の先頭のバイトもこうして読んでおき，違えば名前を比べずに次の候補に進む．
+     * 知らないノード名があれば {@code UncheckedIOException} を投げる．
+     */
+    private void lookupAll(ByteBuffer b, int [] st, int [] en, int [] hs, int [] pre, int t, int [] out) {
+        int mask = table.length - 1;
+        for(int j = 0; j < t; j++) hs[j] = hash(b, st[j], en[j]) & mask;
+        for(int j = 0; j < t; j++) out[j] = table[hs[j]] - 1;
+        for(int j = 0; j < t; j++) { // 最初の候補の名前の先頭のバイトをまとめて読んでおく
+            int u = out[j];
+            int p = u < 0 ? 0 : nameStart[u];
+            pre[j] = p < pool.length ? pool[p] : 0;
+        }
+        for(int j = 0; j < t; j++) {
+            int u = out[j];
+            int h = hs[j];
+            if(u >= 0 && st[j] < en[j] && pre[j] != b.get(st[j])) { // 先頭のバイトが違えば，名前を比べずに次の場所へ
+                h = (h + 1) & mask;
+                u = table[h] - 1;
+            }
+            while(u >= 0 && !matches(u, b, st[j], en[j])) { // 衝突したら次の場所
+                h = (h + 1) & mask;
+                u = table[h] - 1;
+            }
+            if(u < 0) throw new UncheckedIOException(new IOException("unknown node in edge: " + str(b, st[j], en[j])));
+            out[j] = u;
+        }
+    }
+    /**
+     * ノード名のハッシュ表を作る．
+     */
+    private void buildTable() {
+        int cap = Integer.highestOneBit(Math.max(2 * n, 2) - 1) << 1;
+        table = new int[cap];
+        for(int u = 0; u < n; u++) {
+            int h = hash(pool, nameStart[u], nameStart[u + 1]) & (cap - 1);
+            while(table[h] != 0) h = (h + 1) & (cap - 1);
+            table[h] = u + 1;
+        }
+    }
+    /**
+     * バイト列 {@code b[from, to)} のハッシュ値（FNV-1a）を返す．
+     */
+    private static int hash(byte [] b, int from, int to) {
+        int h = 0x811c9dc5;
+        for(int i = from; i < to; i++) h = (h ^ (b[i] & 0xff)) * 0x01000193;
+        return h ^ (h >>> 16);
+    }
+    /**
+     * map したバッファ上のバイト列 {@code b[from, to)} のハッシュ値を返す．{@code hash(byte[], int, int)} と同じ値になる．
+     */
+    private static int hash(ByteBuffer b, int from, int to) {
+        int h = 0x811c9dc5;
+        for(int i = from; i < to; i++) h = (h ^ (b.get(i) & 0xff)) * 0x01000193;
+        return h ^ (h >>> 16);
+    }
+    /**
+     * ノード {@code u} の名前が {@code b[from, to)} と等しいかを返す．
+     */
+    private boolean matches(int u, ByteBuffer b, int from, int to) {
+        int s = nameStart[u];
+        int len = to - from;
+        if(nameStart[u + 1] - s != len) return false;
+        for(int k = 0; k < len; k++) {
+            if(pool[s + k] != b.get(from + k)) return false;
+        }
+        return true;
+    }
+    /**
+     * map したバッファ上のノード名 {@code b[from, to)} の番号を返す．なければ -1．
+     */
+    private int lookup(ByteBuffer b, int from, int to) {
+        int mask = table.length - 1;
+        int h = hash(b, from, to) & mask;
+        for(;;) {
+            int u = table[h] - 1;
+            if(u < 0 || matches(u, b, from, to)) return u;
+            h = (h + 1) & mask;
+        }
+    }
+    /**
+     * ノード名の番号を返す．
+     * @param name ノード名．
+     * @return ノード番号．なければ -1．
+     */
+    int idOf(String name) {
+        byte [] bs = name.getBytes(StandardCharsets.UTF_8);
+        return lookup(ByteBuffer.wrap(bs), 0, bs.length);
+    }
+    /**
+     * ノード番号の名前を返す．
+     * @param u ノード番号．
+     * @return ノード名．
+     */
+    String name(int u) {
+        return new String(pool, nameStart[u], nameStart[u + 1] - nameStart[u], StandardCharsets.UTF_8);
+    }
+    /**
+     * ノード {@code u} と {@code v} がエッジでつながっているかを返す．
+     * @param u ノード番号．
+     * @param v ノード番号．
+     * @return つながっていれば {@code true}．
+     */
+    boolean hasEdge(int u, int v) {
+        for(int k = offsets[u]; k < offsets[u + 1]; k++) {
+            if(targets[k] == v) return true;
+        }
+        return false;
+    }
+    private static boolean isSpace(byte c) {
+        return c == ' ' || c == '\t' || c == '\r' || c == '\n';
+    }
+    /**
+     * 空白と改行を飛ばした位置を返す．
+     */
+    private static int skipBlank(ByteBuffer b, int i, int to) {
+        while(i < to && isSpace(b.get(i))) i++;
+        return i;
+    }
+    /**
+     * 次の行の先頭の位置を返す．
+     */
+    private static int nextLine(ByteBuffer b, int i) {
+        return nextLine(b, i, b.limit());
+    }
+    private static int nextLine(ByteBuffer b, int i, int to) {
+        while(i < to && b.get(i) != '\n') i++;
+        return Math.min(i + 1, to);
+    }
+    private static String str(ByteBuffer b, int from, int to) {
+        byte [] bs = new byte[to - from];
+        for(int i = from; i < to; i++) bs[i - from] = b.get(i);
+        return new String(bs, StandardCharsets.UTF_8);
+    }
+}
@@ -2,7 +2,9 @@ import java.util.*;
 import java.io.*;
 /**
  * 一般のグラフで与えられる迷路クラス．
- * 位置はノード名である String．<br>
+ * 位置はノード名である String．{@code IntMaze} としては，ファイルに現れる順のノード番号で表す．<br>
+ * 読み込み時（{@code GraphFile}）にノード名を番号に置き換え，エッジは番号の配列（CSR 形式）で持つ．
+ * ノード名に戻すのは，ノード名で問い合わせられたときと答えを出力するときだけ．<br>
  * 入力ファイルの形式は次の通り：<br>
  * 　先頭行にノード数 n とエッジ数 m が空白区切りである．<br>
  * 　続く n 行は，それぞれ空白の入っていない文字列で，ノードの名前を表す．重複はない．<br>
@@ -12,7 +14,7 @@ import java.io.*;
  * 　更に続く m 行に，エッジの情報が与えられる．<br>
  * 　エッジの情報は，その辺がつなぐ2つのノードの名前を空白区切りにしたもの．
  */
-class GraphMaze implements Maze<String> {
+class GraphMaze implements Maze<String>, IntMaze {
     /** 
      * ノード数
      */
@@ -21,10 +23,18 @@ class GraphMaze implements Maze<String> {
      * エッジ数
      */
     private int m;
-    /** 
-     * 迷路自体の情報 ＝ 各ノードがつながるノードのリスト．
+    /**
+     * 迷路自体の情報 ＝ ノード名の表と，各ノードがつながるノードの番号（CSR 形式）．
+     */
+    private GraphFile g;
+    /**
+     * ノード番号からノード名への配列．ノード名で問い合わせられたときに初めて作る．
+     */
+    private String [] names;
+    /**
+     * スタートとゴールのノード番号．
      */
-    private HashMap<String, List<String>> neighbors;
+    private int startId, goalId;
     /**
      * getNeighbor 呼び出し回数．
      */
@@ -39,33 +49,28 @@ class GraphMaze implements Maze<String> {
     private final static String goalNode = "G";
     /**
      * ファイル名を受け取り，迷路を読み込むコンストラクタ．
+     * 読み込みは {@code GraphFile} に任せる（ファイルを map して，ノード名の表と CSR 形式の隣接情報を作る）．
      * @param file ファイル名（パス）の文字列．
      */
     GraphMaze(String file) throws Exception {
-        // ファイルから 1行ずつ読み込む準備
-        BufferedReader br = new BufferedReader(new FileReader(file));
-        // 1行読み込み、空白区切りにする準備をする
-        StringTokenizer st = new StringTokenizer(br.readLine());
-        // 最初がノード数, 次がエッジ数
-        n = Integer.parseInt(st.nextToken());
-        m = Integer.parseInt(st.nextToken());
-        // ノード名の登録
-        neighbors = new HashMap<String, List<String>>();
-        for(int i = 0; i < n; i++) {
-            String name = br.readLine(); // ノード名
-            neighbors.put(name, new ArrayList<String>()); // 空の隣接リスト追加
-        }
-        // エッジの登録
-        for(int i = 0; i < m; i++) {
-            // 1行読み込み、空白区切りにする準備をする
-            st = new StringTokenizer(br.readLine()); 
-            String n1 = st.nextToken(); // 片方のノード
-            String n2 = st.nextToken(); // 他方のノード
-            neighbors.get(n1).add(n2);  // n1 の隣接ノードリストに n2 を追加
-            neighbors.get(n2).add(n1);  // n2 の隣接ノードリストに n1 を追加
-        }
+        g = new GraphFile(file);
+        n = g.n;
+        m = g.m;
+        startId = g.idOf(startNode);
+        goalId = g.idOf(goalNode);
         cnt = 0; // カウンタ初期化
     }
+    /**
+     * ノード番号からノード名への配列を返す．なければ作る．
+     * @return ノード番号からノード名への配列．
+     */
+    private String [] names() {
+        if(names == null) {
+            names = new String[n];
+            for(int u = 0; u < n; u++) names[u] = g.name(u);
+        }
+        return names;
+    }
 
     // TODO: 必要なメソッドを適切に実装せよ
     public String getStart(){
@@ -74,17 +79,88 @@ class GraphMaze implements Maze<String> {
 
     public List<String> getNeighbors(String p){
         cnt++;
-        ArrayList<String> ps = new ArrayList<String>();    
-        for(String str : neighbors.get(p)){
-            ps.add(str);
+        String [] names = names();
+        int u = g.idOf(p);
+        ArrayList<String> ps = new ArrayList<String>(g.offsets[u + 1] - g.offsets[u]);
+        for(int k = g.offsets[u]; k < g.offsets[u + 1]; k++){
+            ps.add(names[g.targets[k]]);
         }
         return ps;
     }
 
+    /**
+     * 指定されたノード{@code p}につながるノードのそれぞれについて，{@code v.visit} を呼ぶ．
+     * リストを作らず，隣接情報の配列からそのまま順に渡す．
+     * @param p 指定ノード．
+     * @param v つながるノードを受け取る訪問者．
+     */
+    public void forEachNeighbor(String p, NeighborVisitor<String> v) {
+        cnt++;
+        String [] names = names();
+        int u = g.idOf(p);
+        for(int k = g.offsets[u]; k < g.offsets[u + 1]; k++) {
+            v.visit(names[g.targets[k]]);
+        }
+    }
+
     public boolean isGoal(String p){
         return p.equals(goalNode);        
     }
-    
+
+    /**
+     * ゴールのノード（ノード名 {@code G}）を返す．エッジに向きはないので，逆向きの探索は {@code forEachNeighbor} のままでよい．
+     * @return ゴールのノードだけからなるリスト．
+     */
+    public List<String> getGoals() {
+        ArrayList<String> gs = new ArrayList<String>();
+        gs.add(goalNode);
+        return gs;
+    }
+
+    public int size() {
+        return n;
+    }
+
+    public int maxDegree() {
+        return g.maxDeg;
+    }
+
+    public int getStartId() {
+        return startId;
+    }
+
+    /**
+     * ノード名のノード番号を返す．
+     * @param name ノード名．
+     * @return ノード番号．そのノードがなければ -1．
+     */
+    int idOf(String name) {
+        return g.idOf(name);
+    }
+
+    public int getNeighbors(int p, int [] out) {
+        cnt++;
+        int d = g.offsets[p + 1] - g.offsets[p];
+        System.arraycopy(g.targets, g.offsets[p], out, 0, d);
+        return d;
+    }
+
+    public boolean isGoal(int p) {
+        return p == goalId;
+    }
+
+    /**
+     * スタートからゴールに至るノード番号の並びを受け取り，ノード名にして出力する．
+     * @param ps スタートからゴールに至るノード番号の並び．
+     */
+    public void printAnswer(int [] ps) {
+        ArrayList<String> l = new ArrayList<String>();
+        for(int p : ps) {
+            l.add(g.name(p));
+        }
+        printAnswer(l);
+    }
+
     /**
      * スタートからゴールに至る位置の並びを受け取り，それをそのまま出力する．
      * @param ps スタートからゴールに至る位置の並び．スタートとゴールを両端に持つ．
@@ -13,45 +13,36 @@ public class GraphMazeAnswerCheck {
             System.out.println("java GraphMazeAnswerCheck graphfile");
             return;
         }
-        BufferedReader br = new BufferedReader(new FileReader(args[0]));
-        StringTokenizer st = new StringTokenizer(br.readLine());
-        int n = Integer.parseInt(st.nextToken());
-        int m = Integer.parseInt(st.nextToken());
-        HashMap<String, HashSet<String>> neighbors = new HashMap<String, HashSet<String>>();
-        for(int i = 0; i < n; i++) {
-            String name = br.readLine();
-            neighbors.put(name, new HashSet<String>());
-        }
-        for(int i = 0; i < m; i++) {
-            st = new StringTokenizer(br.readLine()); 
-            String n1 = st.nextToken();
-            String n2 = st.nextToken();
-            neighbors.get(n1).add(n2);
-            neighbors.get(n2).add(n1);
-        }
+        // ノード名の表と隣接情報は GraphFile で作る（ファイルを map してバイトのまま走査する）
+        GraphFile g = new GraphFile(args[0]);
         // 標準入力をとる
-        br = new BufferedReader(new InputStreamReader(System.in));
-        HashSet<String> ns = null;
+        BufferedReader br = new BufferedReader(new InputStreamReader(System.in));
+        int prevId = -1;
         String prev = null;
         for(;;) {
             String line = br.readLine();
-            if(ns == null) {
+            if(line == null) {
+                System.out.println("NG: the path does not reach G");
+                return;
+            }
+            int id = g.idOf(line);
+            if(prev == null) {
                 if(!line.equals("S")) {
                     System.out.println("NG: the path must start with S");
                     return;
                 }
             } else {
-                if(neighbors.get(line) == null) {
+                if(id < 0) {
                     System.out.println("NG: node " + line + " does not exist");
                     return;
                     
                 }
-                if(!ns.contains(line)) {
+                if(!g.hasEdge(prevId, id)) {
                     System.out.println("NG: no edge exists between " + prev + " and " + line);
                     return;
                 }
             }
-            ns = neighbors.get(line);
+            prevId = id;
             prev = line;
             if(line.equals("G")) {
                 System.out.println("OK");
@@ -0,0 +1,12 @@
+/**
+ * 位置からゴールまでの距離（移動の回数）の見積もり．{@code AStarMazeSolver} で使う．
+ * @param <Pos> 迷路の位置の型．
+ */
+interface Heuristic<Pos> {
+    /**
+     * 位置{@code p}からゴールまでの距離の見積もりを返す．実際の距離を超えてはならない．
+     * @param p 指定位置．
+     * @return 距離の見積もり．
+     */
+    int estimate(Pos p);
+}
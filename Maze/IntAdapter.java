@@ -0,0 +1,13 @@
+/**
+ * IntMazeSolver.solve の BFS と DFS の差異を吸収するためのインターフェース（{@code Adapter<E>} の int 版）．
+ * 要素を int のまま持つので，要素ごとにオブジェクトを作らない．
+ */
+interface IntAdapter {
+    /**
+     * 新しい、空のインスタンスを準備するメソッド．
+     */
+    void init();
+    void addValue(int value);
+    int size();
+    int getValue();
+}
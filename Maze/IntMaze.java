@@ -0,0 +1,54 @@
+/**
+ * 位置を int で表す迷路インターフェース．
+ * 位置は 0 以上 {@code size()} 未満の整数で，例えばテキストの迷路ではマス (i, j) を {@code i * w + j}，
+ * グラフの迷路ではノード番号とする．<br>
+ * 位置がオブジェクトでないので，探索する側は訪問済みの印をビット集合で，どこから来たかを int の配列で持てる．
+ * 大きな迷路では {@code HashSet} や {@code HashMap} に位置のオブジェクトを入れるよりずっと省メモリで速い．
+ */
+public interface IntMaze {
+    /**
+     * 位置の総数を返す．位置は 0 以上この値未満．
+     * @return 位置の総数．
+     */
+    int size();
+    /**
+     * 一つの位置から移動可能な位置（および，一つの位置へ移動可能な位置）の数の最大値を返す．
+     * {@code getNeighbors} と {@code getPredecessors} に渡す配列はこの長さがあればよい．
+     * @return 移動可能な位置の数の最大値．
+     */
+    int maxDegree();
+    /**
+     * 迷路のスタート位置を取得．
+     * （{@code Maze<Pos>} も実装するクラスで {@code getStart} とぶつからないように名前を変えてある．）
+     * @return スタート位置．
+     */
+    int getStartId();
+    /**
+     * 指定された位置{@code p}から移動可能な位置を配列{@code out}の先頭から書き込み，その個数を返す．
+     * @param p 指定位置．
+     * @param out 移動可能な位置を書き込む配列．長さは {@code maxDegree()} 以上．
+     * @return 書き込んだ位置の個数．
+     */
+    int getNeighbors(int p, int [] out);
+    /**
+     * 指定された位置{@code p}へ移動可能な位置を配列{@code out}の先頭から書き込み，その個数を返す．
+     * 既定では移動が可逆とみなし，{@code getNeighbors} と同じにする（{@code Maze.forEachPredecessor} と同様）．
+     * @param p 指定位置．
+     * @param out 移動可能な位置を書き込む配列．長さは {@code maxDegree()} 以上．
+     * @return 書き込んだ位置の個数．
+     */
+    default int getPredecessors(int p, int [] out) {
+        return getNeighbors(p, out);
+    }
+    /**
+     * 指定された位置{@code p}がゴールかどうかを返す．
+     * @param p 指定位置．
+     * @return 指定位置{@code p}がゴールであれば{@code true}．そうでなければ{@code false}．
+     */
+    boolean isGoal(int p);
+    /**
+     * スタートからゴールに至る位置の並びを受け取り、それを適宜わかりやすいように出力する．
+     * @param ps スタートからゴールに至る位置の並び．スタートとゴールを両端に持つ．
+     */
+    void printAnswer(int [] ps);
+}
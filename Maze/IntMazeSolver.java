@@ -0,0 +1,66 @@
+import java.util.*;
+/**
+ * 位置を int で表す迷路（{@code IntMaze}）の探索．
+ * {@code MazeSolver.solve} と同じ手順だが，訪問済みの印は {@code BitSet} に，
+ * 「ある位置に、どの位置から来たか？」は位置で引く int の配列に記録する．
+ * 隣の位置を探す順序も同じなので，同じ迷路なら {@code MazeSolver.solve} と同じ経路を見つける．
+ */
+class IntMazeSolver {
+    /**
+     * スタートからゴールへの経路を探して出力する．見つからなければ "impossible" を出力する．
+     * @param m 迷路．
+     * @param collection これからチェックすべき位置を貯める構造．{@code IntQueue} なら BFS，{@code IntStack} なら DFS．
+     * @return 探索の結果と統計．
+     */
+    public static SearchResult<Integer> solve(IntMaze m, IntAdapter collection) {
+        SearchResult<Integer> r = new SearchResult<Integer>("int-" + collection.getClass().getSimpleName()); // 探索の統計
+        long visited = 1;
+        int n = m.size();
+        // 「ある位置に、どの位置から来たか？」を記録する配列．スタートは -1
+        int [] prev = new int[n];
+        // 貯める構造に入れたことのある位置の集まり
+        BitSet seen = new BitSet(n);
+        int [] ns = new int[m.maxDegree()]; // 隣の位置を受け取る配列（使い回す）
+        collection.init();
+        int st = m.getStartId();
+        collection.addValue(st);
+        seen.set(st);
+        prev[st] = -1;
+        while(collection.size() > 0) {
+            int p = collection.getValue();
+            if(m.isGoal(p)) { // ゴールに辿り着いたか？
+                int [] ps = path(prev, p);
+                r.finish(SearchResult.asList(ps), visited);
+                m.printAnswer(ps);
+                return r;
+            }
+            r.expanded++;
+            int k = m.getNeighbors(p, ns);
+            for(int i = 0; i < k; i++) {
+                int q = ns[i];
+                if(!seen.get(q)) {
+                    collection.addValue(q);
+                    seen.set(q);
+                    prev[q] = p;
+                    visited++;
+                }
+            }
+            r.frontier(collection.size());
+        }
+        System.out.println("impossible");
+        return r.finish(null, visited);
+    }
+    /**
+     * 記録をゴールから逆向きにたどり，スタートからゴールへの位置の並びを返す．
+     * @param prev 各位置にどの位置から来たかの記録．スタートは -1．
+     * @param goal ゴール位置．
+     * @return スタートからゴールへの位置の並び．
+     */
+    static int [] path(int [] prev, int goal) {
+        int len = 0;
+        for(int c = goal; c >= 0; c = prev[c]) len++;
+        int [] ps = new int[len];
+        for(int c = goal; c >= 0; c = prev[c]) ps[--len] = c; // 後ろから詰めれば正しい向きになる
+        return ps;
+    }
+}
@@ -0,0 +1,33 @@
+/**
+ * BFS のための int のキュー．リングバッファで，足りなくなったら倍に伸ばす．
+ */
+class IntQueue implements IntAdapter {
+    int [] que;  // 長さは常に 2 のべき
+    int head;    // 先頭の添字
+    int size;
+    public void init() {
+        que = new int[16];
+        head = 0;
+        size = 0;
+    }
+    public void addValue(int value) {
+        if(size == que.length) { // 先頭が 0 番目に来るように並べ直して伸ばす
+            int [] q = new int[size * 2];
+            int k = que.length - head;
+            System.arraycopy(que, head, q, 0, k);
+            System.arraycopy(que, 0, q, k, head);
+            que = q;
+            head = 0;
+        }
+        que[(head + size++) & (que.length - 1)] = value;
+    }
+    public int size() {
+        return size;
+    }
+    public int getValue() {
+        int v = que[head];
+        head = (head + 1) & (que.length - 1);
+        size--;
+        return v;
+    }
+}
@@ -0,0 +1,22 @@
+import java.util.*;
+/**
+ * DFS のための int のスタック．配列が足りなくなったら倍に伸ばす．
+ */
+class IntStack implements IntAdapter {
+    int [] st;
+    int size;
+    public void init() {
+        st = new int[16];
+        size = 0;
+    }
+    public void addValue(int value) {
+        if(size == st.length) st = Arrays.copyOf(st, size * 2);
+        st[size++] = value;
+    }
+    public int size() {
+        return size;
+    }
+    public int getValue() {
+        return st[--size];
+    }
+}
@@ -16,6 +16,47 @@ public interface Maze<Pos> {
      * @return 指定位置{@code p}から移動可能な位置のリスト．
      */
     List<Pos> getNeighbors(Pos p);
+    /**
+     * 指定された位置{@code p}から移動可能な位置のそれぞれについて，{@code v.visit} を呼ぶ．
+     * {@code getNeighbors} と同じ位置を同じ順に渡すが，リストを作らない．<br>
+     * 渡される位置のオブジェクトは {@code visit} の呼び出しの間だけ有効で，実装によっては使い回される．
+     * 呼び出しの後も保持するなら {@code copy} したものを保持すること．
+     * @param p 指定位置．
+     * @param v 移動可能な位置を受け取る訪問者．
+     */
+    default void forEachNeighbor(Pos p, NeighborVisitor<Pos> v) {
+        for(Pos n : getNeighbors(p)) {
+            v.visit(n);
+        }
+    }
+    /**
+     * {@code forEachNeighbor} で渡された位置を，呼び出しの後も保持できるものにして返す．
+     * 位置を使い回さない実装ではそのまま返す．
+     * @param p {@code forEachNeighbor} で渡された位置．
+     * @return 保持してよい，{@code p} と等しい位置．
+     */
+    default Pos copy(Pos p) {
+        return p;
+    }
+    /**
+     * 指定された位置{@code p}へ移動可能な位置（{@code p} を隣に持つ位置）のそれぞれについて，{@code v.visit} を呼ぶ．
+     * ゴールの側から逆向きに探索するためのもの．
+     * 既定では移動が可逆（{@code p} へ移動できる位置と {@code p} から移動できる位置が同じ）とみなし，{@code forEachNeighbor} と同じにする．
+     * 一方通行の移動がある迷路では上書きすること．渡される位置の扱いは {@code forEachNeighbor} と同じ．
+     * @param p 指定位置．
+     * @param v {@code p} へ移動可能な位置を受け取る訪問者．
+     */
+    default void forEachPredecessor(Pos p, NeighborVisitor<Pos> v) {
+        forEachNeighbor(p, v);
+    }
+    /**
+     * ゴールである位置の全てを返す．
+     * 既定では {@code null}（ゴールを {@code isGoal} でしか判定できない迷路）．
+     * @return ゴールである位置のリスト．分からなければ {@code null}．
+     */
+    default List<Pos> getGoals() {
+        return null;
+    }
     /**
      * 指定された位置{@code p}がゴールかどうかを返す．
      * @param p 指定位置．
@@ -0,0 +1,222 @@
+/*
+ * 迷路の解法のベンチマーク．
+ * MazeGenerator で作った迷路（完全迷路，広間，ワープつき完全迷路，グラフ）について，
+ * BFSMazeSolver，DFSMazeSolver，MazeSolver（MyQueue，MyStack を Adapter にしたもの）と
+ * IntMazeSolver（IntQueue，IntStack）の，1回の探索あたりの時間，割り当てメモリ量と getNeighbors の呼び出し回数を比べる．
+ * コンパイル & 実行：
+ * javac -encoding UTF-8 *.java
+ * java MazeBench
+ * java MazeBench -sizes 1001,3001 -nodes 1000000 -kinds perfect,graph -solvers bfs,int-queue -i 10
+ */
+
+import java.util.*;
+import java.io.*;
+import java.lang.management.*;
+
+/**
+ * 計測対象の解法．
+ * 迷路は計測前に読み込んでおき，{@code run} の実行（探索1回）だけを計測する．
+ */
+abstract class MazeBenchSolver {
+    /**
+     * 解法の名前．
+     */
+    final String name;
+    /**
+     * 名前を受け取るコンストラクタ．
+     * @param name 解法の名前．
+     */
+    MazeBenchSolver(String name) {
+        this.name = name;
+    }
+    /**
+     * 迷路を1回解く．
+     * @param m 迷路．このリポジトリの迷路は全て {@code IntMaze} も実装している．
+     * @return 探索の結果と統計．
+     */
+    abstract SearchResult<?> run(Maze<?> m);
+}
+
+/**
+ * 迷路の解法のベンチマークを実行するクラス．
+ * JMH と同様に，ウォームアップの後に計測を繰り返し，その平均を表示する．
+ * 時間と割り当てメモリ量は {@code SearchResult} の値（答えの出力を含まない）を使う．
+ * expanded は探索1回あたりの getNeighbors（forEachNeighbor）の呼び出し回数で，迷路の {@code cnt} の増分と同じ．
+ */
+class MazeBench {
+    /**
+     * ウォームアップの回数．
+     */
+    static int warmups = 2;
+    /**
+     * 計測の回数．
+     */
+    static int iterations = 5;
+    /**
+     * 計測中に解法が出力する答えを捨てるための出力先．
+     */
+    static final PrintStream devNull = new PrintStream(OutputStream.nullOutputStream());
+
+    /**
+     * 計測対象の解法の一覧を作る．
+     * @return 解法の一覧．
+     */
+    static List<MazeBenchSolver> allSolvers() {
+        ArrayList<MazeBenchSolver> solvers = new ArrayList<MazeBenchSolver>();
+        solvers.add(new MazeBenchSolver("bfs") {
+            SearchResult<?> run(Maze<?> m) { return BFSMazeSolver.solve(m); }
+        });
+        solvers.add(new MazeBenchSolver("dfs") {
+            SearchResult<?> run(Maze<?> m) { return DFSMazeSolver.solve(m); }
+        });
+        solvers.add(new MazeBenchSolver("generic-queue") {
+            SearchResult<?> run(Maze<?> m) { return withQueue(m); }
+        });
+        solvers.add(new MazeBenchSolver("generic-stack") {
+            SearchResult<?> run(Maze<?> m) { return withStack(m); }
+        });
+        solvers.add(new MazeBenchSolver("int-queue") {
+            SearchResult<?> run(Maze<?> m) { return IntMazeSolver.solve((IntMaze)m, new IntQueue()); }
+        });
+        solvers.add(new MazeBenchSolver("int-stack") {
+            SearchResult<?> run(Maze<?> m) { return IntMazeSolver.solve((IntMaze)m, new IntStack()); }
+        });
+        return solvers;
+    }
+    /**
+     * {@code MyQueue} を Adapter にして {@code MazeSolver} で解く（位置の型を決めるためのメソッド）．
+     */
+    static <Pos> SearchResult<Pos> withQueue(Maze<Pos> m) {
+        return MazeSolver.solve(m, new MyQueue<Pos>());
+    }
+    /**
+     * {@code MyStack} を Adapter にして {@code MazeSolver} で解く（位置の型を決めるためのメソッド）．
+     */
+    static <Pos> SearchResult<Pos> withStack(Maze<Pos> m) {
+        return MazeSolver.solve(m, new MyStack<Pos>());
+    }
+    /**
+     * {@code MazeGenerator} で迷路を一時ファイルに書き出し，読み込む．
+     * @param kind 迷路の種類（perfect, rooms, warp, graph）．
+     * @param size テキストの迷路なら一辺の長さ，グラフならノード数．
+     * @param density 広間の壁の割合．
+     * @param seed 乱数の種．
+     * @return 読み込んだ迷路．
+     */
+    static Maze<?> generate(String kind, int size, double density, long seed) throws Exception {
+        File f = File.createTempFile("mazebench", ".txt");
+        f.deleteOnExit();
+        try(Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(f), "US-ASCII"), 1 << 16)) {
+            if(kind.equals("perfect")) MazeGenerator.perfect(size, size, 0, seed, out);
+            else if(kind.equals("rooms")) MazeGenerator.rooms(size, size, density, 0, seed, out);
+            else if(kind.equals("warp")) MazeGenerator.perfect(size, size, 5, seed, out);
+            else if(kind.equals("graph")) MazeGenerator.graph(size, size * 4, seed, out); // 平均次数 8
+            else throw new IllegalArgumentException("unknown kind: " + kind);
+        }
+        Maze<?> m;
+        if(kind.equals("warp")) m = new TextMazeWithWarp(f.getPath());
+        else if(kind.equals("graph")) m = new GraphMaze(f.getPath());
+        else m = new TextMaze(f.getPath());
+        f.delete();
+        return m;
+    }
+    /**
+     * 現在までの GC の回数の合計を返す．
+     * @return GC の回数．
+     */
+    static long gcCount() {
+        long c = 0;
+        for(GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            c += Math.max(gc.getCollectionCount(), 0);
+        }
+        return c;
+    }
+    /**
+     * 答えの出力を捨てながら，迷路を1回解く．
+     * @param s 解法．
+     * @param m 迷路．
+     * @return 探索の結果と統計．
+     */
+    static SearchResult<?> quietly(MazeBenchSolver s, Maze<?> m) {
+        PrintStream out = System.out;
+        System.setOut(devNull);
+        try {
+            return s.run(m);
+        } finally {
+            System.setOut(out);
+        }
+    }
+    /**
+     * 一つの条件（迷路・解法）について，ウォームアップと計測を行い結果を1行表示する．
+     * @param maze 迷路の名前．
+     * @param m 迷路．
+     * @param s 解法．
+     */
+    static void measure(String maze, Maze<?> m, MazeBenchSolver s) {
+        for(int i = 0; i < warmups; i++) quietly(s, m);
+        long nanos = 0, minNanos = Long.MAX_VALUE, bytes = 0;
+        SearchResult<?> r = null;
+        long gc0 = gcCount();
+        for(int i = 0; i < iterations; i++) {
+            r = quietly(s, m);
+            nanos += r.elapsedNanos;
+            minNanos = Math.min(minNanos, r.elapsedNanos);
+            bytes += r.allocatedBytes;
+        }
+        long gcs = gcCount() - gc0;
+        System.out.println(String.format("%-14s %-14s %8d %10d %10d %10d %10.3f %10.3f %10.2f %5d",
+                                         maze, s.name, r.length(), r.expanded, r.visited, r.peakFrontier,
+                                         nanos / 1e6 / iterations, minNanos / 1e6,
+                                         bytes / (double)iterations / (1 << 20), gcs));
+    }
+    /**
+     * カンマ区切りの文字列を整数のリストにする．
+     * @param s カンマ区切りの文字列．
+     * @return 整数のリスト．
+     */
+    static int [] parseInts(String s) {
+        String [] ts = s.split(",");
+        int [] ret = new int[ts.length];
+        for(int i = 0; i < ts.length; i++) ret[i] = Integer.parseInt(ts[i]);
+        return ret;
+    }
+    /**
+     * 指定された条件でベンチマークを実行する．
+     */
+    public static void main(String [] args) throws Exception {
+        int [] sizes = {201, 1001};
+        int [] nodes = {100000};
+        List<String> kinds = Arrays.asList("perfect", "rooms", "warp", "graph");
+        Set<String> names = null; // null なら全て
+        double density = 0.3;
+        long seed = 1;
+        for(int i = 0; i + 1 < args.length; i += 2) {
+            if(args[i].equals("-sizes")) sizes = parseInts(args[i+1]);
+            else if(args[i].equals("-nodes")) nodes = parseInts(args[i+1]);
+            else if(args[i].equals("-kinds")) kinds = Arrays.asList(args[i+1].split(","));
+            else if(args[i].equals("-solvers")) names = new HashSet<String>(Arrays.asList(args[i+1].split(",")));
+            else if(args[i].equals("-density")) density = Double.parseDouble(args[i+1]);
+            else if(args[i].equals("-seed")) seed = Long.parseLong(args[i+1]);
+            else if(args[i].equals("-wi")) warmups = Integer.parseInt(args[i+1]);
+            else if(args[i].equals("-i")) iterations = Integer.parseInt(args[i+1]);
+            else {
+                System.out.println("java MazeBench [-sizes 201,1001] [-nodes 100000] [-kinds perfect,rooms,warp,graph]");
+                System.out.println("               [-solvers bfs,dfs,generic-queue,generic-stack,int-queue,int-stack]");
+                System.out.println("               [-density 0.3] [-seed s] [-wi n] [-i n]");
+                return;
+            }
+        }
+        System.out.println(String.format("%-14s %-14s %8s %10s %10s %10s %10s %10s %10s %5s",
+                                         "maze", "solver", "length", "expanded", "visited", "frontier",
+                                         "avg(ms)", "min(ms)", "alloc(MB)", "gc"));
+        for(String kind : kinds) {
+            for(int size : kind.equals("graph") ? nodes : sizes) {
+                Maze<?> m = generate(kind, size, density, seed);
+                for(MazeBenchSolver s : allSolvers()) {
+                    if(names != null && !names.contains(s.name)) continue;
+                    measure(kind + "-" + size, m, s);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,290 @@
+import java.util.*;
+import java.io.*;
+/**
+ * ベンチマーク用の大きな迷路を乱数で作り，{@code TextMaze}，{@code TextMazeWithWarp}，{@code GraphMaze} の形式で書き出す．
+ * 同じ種類・大きさ・種（seed）からは常に同じ迷路ができる．<br>
+ * 迷路全体をメモリに持たずに1行ずつ書き出すので，どれだけ大きくても作れる（使うメモリは幅に比例する分だけ）：<br>
+ * 　perfect : 完全迷路（任意の2マスの間の道がちょうど一つ）．
+ * 行ごとに Kruskal 法を行う Eller の方法で作る（同じ集合にならない壁を乱数で壊していく点は Kruskal 法と同じ）．<br>
+ * 　rooms : 壁が確率 density でばらまかれた広間．スタートからゴールに行けないこともある．<br>
+ * 　graph : n ノード m エッジの無向グラフ．最初の n-1 本で全体をつなぐ木を作り，残りは一様な乱数でつなぐ．<br>
+ * テキストの迷路には，ワープの入口と出口（[A-E] と [a-e]）を k 組まで置ける．
+ * コンパイル & 実行：<br>
+ * 　javac -encoding UTF-8 MazeGenerator.java<br>
+ * 　java MazeGenerator perfect 10001 10001 -seed 1 -warps 2 &gt; big.txt
+ */
+class MazeGenerator {
+    /**
+     * 迷路の上に置く特別な文字（スタート，ゴール，ワープ）の位置．
+     */
+    static class Marks {
+        /**
+         * 置く位置の行と列．
+         */
+        final int [] is, js;
+        /**
+         * 置く文字．
+         */
+        final char [] cs;
+        /**
+         * スタート，ゴールと {@code warps} 組のワープを，互いに重ならないように乱数で選ぶ．
+         * 位置は {@code rows}×{@code cols} 個の候補から選び，候補 (a, b) は迷路の (step*a+1, step*b+1) に置く．
+         * スタートは最初の候補，ゴールは最後の候補に固定する．
+         * @param rows 候補の行数．
+         * @param cols 候補の列数．
+         * @param step 候補の間隔．
+         * @param warps ワープの組の数（0 から 5）．
+         * @param rnd 乱数生成器．
+         */
+        Marks(int rows, int cols, int step, int warps, Random rnd) {
+            if(warps < 0 || warps > 5) throw new IllegalArgumentException("warps must be 0..5: " + warps);
+            long total = (long)rows * cols;
+            if(total < 2 + 2 * warps) throw new IllegalArgumentException("maze too small for S, G and " + warps + " warps");
+            int k = 2 + 2 * warps;
+            is = new int[k];
+            js = new int[k];
+            cs = new char[k];
+            HashSet<Long> used = new HashSet<Long>();
+            long [] ps = new long[k];
+            ps[0] = 0;
+            ps[1] = total - 1;
+            used.add(ps[0]);
+            used.add(ps[1]);
+            for(int t = 2; t < k; t++) {
+                long p;
+                do {
+                    p = (long)(rnd.nextDouble() * total);
+                } while(!used.add(p));
+                ps[t] = p;
+            }
+            for(int t = 0; t < k; t++) {
+                is[t] = (int)(ps[t] / cols) * step + 1;
+                js[t] = (int)(ps[t] % cols) * step + 1;
+                if(t == 0) cs[t] = 'S';
+                else if(t == 1) cs[t] = 'G';
+                else if(t % 2 == 0) cs[t] = (char)('A' + (t - 2) / 2); // 入口
+                else cs[t] = (char)('a' + (t - 2) / 2); // 対応する出口
+            }
+        }
+        /**
+         * 第 {@code i} 行にある特別な文字を {@code line} に書き込む．
+         * @param i 行番号．
+         * @param line 第 {@code i} 行の文字．
+         */
+        void apply(int i, char [] line) {
+            for(int t = 0; t < is.length; t++) {
+                if(is[t] == i) line[js[t]] = cs[t];
+            }
+        }
+    }
+    /**
+     * 完全迷路を書き出す．
+     * マスは奇数番目の行と列にあり，間の壁を壊すことでつなぐ．
+     * 1行分のマスについて，どのマスが上の行を通じてつながっているか（集合）だけを覚えておけば次の行を決められる（Eller の方法）：<br>
+     * 　1. 上から道が来ていないマスは，新しい集合にする．<br>
+     * 　2. 右隣と違う集合なら，乱数で（最後の行なら必ず）間の壁を壊して同じ集合にする．<br>
+     * 　3. 各集合から少なくとも一つ，乱数で選んだマスの下の壁を壊す．<br>
+     * 集合は列番号を使った union-find で表し，行ごとに作り直す．
+     * @param h 迷路の高さ（3 以上）．
+     * @param w 迷路の幅（3 以上）．
+     * @param warps ワープの組の数（0 から 5）．
+     * @param seed 乱数の種．
+     * @param out 書き出し先．
+     */
+    static void perfect(int h, int w, int warps, long seed, Writer out) throws IOException {
+        if(h < 3 || w < 3) throw new IllegalArgumentException("maze must be at least 3x3: " + h + "x" + w);
+        int ch = (h - 1) / 2, cw = (w - 1) / 2; // マスの行数と列数
+        Random rnd = new Random(seed);
+        Marks marks = new Marks(ch, cw, 2, warps, rnd);
+        out.write(h + " " + w + "\n");
+        char [] line = new char[w];
+        Arrays.fill(line, '*');
+        out.write(line);
+        out.write('\n');
+        int [] label = new int[cw];   // 上の行から道が来ていれば，その集合の番号．来ていなければ -1
+        int [] parent = new int[cw];  // この行の union-find
+        int [] first = new int[cw];   // 集合の番号ごとに，この行で最初に現れた列
+        int [] last = new int[cw];    // 集合の代表ごとに，この行で最後に現れた列
+        boolean [] right = new boolean[cw], down = new boolean[cw], hasDown = new boolean[cw];
+        Arrays.fill(label, -1);
+        for(int r = 0; r < ch; r++) {
+            boolean lastRow = r == ch - 1;
+            // 1. 上の行から来た集合をまとめ，それ以外は新しい集合にする
+            Arrays.fill(first, -1);
+            for(int c = 0; c < cw; c++) {
+                parent[c] = c;
+                if(label[c] >= 0) {
+                    if(first[label[c]] < 0) first[label[c]] = c;
+                    else parent[c] = first[label[c]];
+                }
+            }
+            // 2. 右隣との壁を壊す
+            for(int c = 0; c < cw; c++) {
+                right[c] = false;
+                if(c + 1 < cw) {
+                    int a = find(parent, c), b = find(parent, c + 1);
+                    if(a != b && (lastRow || rnd.nextBoolean())) {
+                        parent[b] = a;
+                        right[c] = true;
+                    }
+                }
+            }
+            // 3. 下の壁を壊す
+            Arrays.fill(down, false);
+            if(!lastRow) {
+                Arrays.fill(hasDown, false);
+                for(int c = 0; c < cw; c++) {
+                    int a = find(parent, c);
+                    last[a] = c;
+                    if(rnd.nextBoolean()) {
+                        down[c] = true;
+                        hasDown[a] = true;
+                    }
+                }
+                for(int c = 0; c < cw; c++) {
+                    int a = find(parent, c);
+                    if(!hasDown[a]) { // 下に道のない集合は，最後のマスから下に道を作る
+                        down[last[a]] = true;
+                        hasDown[a] = true;
+                    }
+                }
+            }
+            for(int c = 0; c < cw; c++) label[c] = down[c] ? find(parent, c) : -1;
+            // マスの行と，その下の壁の行を書き出す
+            Arrays.fill(line, '*');
+            for(int c = 0; c < cw; c++) {
+                line[2 * c + 1] = ' ';
+                if(right[c]) line[2 * c + 2] = ' ';
+            }
+            marks.apply(2 * r + 1, line);
+            out.write(line);
+            out.write('\n');
+            Arrays.fill(line, '*');
+            for(int c = 0; c < cw; c++) {
+                if(down[c]) line[2 * c + 1] = ' ';
+            }
+            out.write(line);
+            out.write('\n');
+        }
+        if(h % 2 == 0) { // 高さが偶数なら，最後の1行は壁
+            Arrays.fill(line, '*');
+            out.write(line);
+            out.write('\n');
+        }
+        out.flush();
+    }
+    /**
+     * union-find の代表を返す（経路を半分に縮めながらたどる）．
+     */
+    private static int find(int [] parent, int c) {
+        while(parent[c] != c) {
+            parent[c] = parent[parent[c]];
+            c = parent[c];
+        }
+        return c;
+    }
+    /**
+     * 広間の迷路を書き出す．周りは壁で，内側の各マスは確率 {@code density} で壁になる．
+     * スタートは左上，ゴールは右下の隅に置く．
+     * @param h 迷路の高さ（3 以上）．
+     * @param w 迷路の幅（3 以上）．
+     * @param density 壁の割合．
+     * @param warps ワープの組の数（0 から 5）．
+     * @param seed 乱数の種．
+     * @param out 書き出し先．
+     */
+    static void rooms(int h, int w, double density, int warps, long seed, Writer out) throws IOException {
+        if(h < 3 || w < 3) throw new IllegalArgumentException("maze must be at least 3x3: " + h + "x" + w);
+        Random rnd = new Random(seed);
+        Marks marks = new Marks(h - 2, w - 2, 1, warps, rnd);
+        out.write(h + " " + w + "\n");
+        char [] line = new char[w];
+        for(int i = 0; i < h; i++) {
+            Arrays.fill(line, '*');
+            if(i > 0 && i < h - 1) {
+                for(int j = 1; j < w - 1; j++) {
+                    if(rnd.nextDouble() >= density) line[j] = ' ';
+                }
+                marks.apply(i, line);
+            }
+            out.write(line);
+            out.write('\n');
+        }
+        out.flush();
+    }
+    /**
+     * グラフの迷路を書き出す．ノード 0 が "S"，ノード n-1 が "G"，ほかは "n" + 番号．
+     * 最初の n-1 本のエッジはノード i とそれより前の乱数で選んだノードをつなぎ（全体が木になる），
+     * 残りのエッジは異なる2ノードを一様な乱数で選ぶ．
+     * @param n ノード数（2 以上）．
+     * @param m エッジ数（n-1 以上）．
+     * @param seed 乱数の種．
+     * @param out 書き出し先．
+     */
+    static void graph(int n, int m, long seed, Writer out) throws IOException {
+        if(n < 2 || m < n - 1) throw new IllegalArgumentException("need n >= 2 and m >= n-1: " + n + " " + m);
+        Random rnd = new Random(seed);
+        out.write(n + " " + m + "\n");
+        for(int u = 0; u < n; u++) {
+            out.write(nodeName(u, n));
+            out.write('\n');
+        }
+        for(int e = 0; e < m; e++) {
+            int u, v;
+            if(e < n - 1) {
+                u = e + 1;
+                v = rnd.nextInt(u);
+            } else {
+                u = rnd.nextInt(n);
+                do {
+                    v = rnd.nextInt(n);
+                } while(v == u);
+            }
+            out.write(nodeName(u, n));
+            out.write(' ');
+            out.write(nodeName(v, n));
+            out.write('\n');
+        }
+        out.flush();
+    }
+    /**
+     * ノード番号からノード名を作る．
+     */
+    private static String nodeName(int u, int n) {
+        if(u == 0) return "S";
+        if(u == n - 1) return "G";
+        return "n" + u;
+    }
+    /**
+     * 指定された迷路を標準出力（{@code -o} があればそのファイル）に書き出す．
+     */
+    public static void main(String [] args) throws IOException {
+        if(args.length < 3) {
+            System.out.println("java MazeGenerator perfect h w [-seed s] [-warps k] [-o file]");
+            System.out.println("java MazeGenerator rooms h w [-density d] [-seed s] [-warps k] [-o file]");
+            System.out.println("java MazeGenerator graph n m [-seed s] [-o file]");
+            System.out.println("  -seed : the random seed (default 1)");
+            System.out.println("  -warps : the number of warp pairs (0..5, default 0) for TextMazeWithWarp");
+            System.out.println("  -density : the ratio of walls in rooms (default 0.3)");
+            return;
+        }
+        long seed = 1;
+        int warps = 0;
+        double density = 0.3;
+        String file = null;
+        for(int i = 3; i + 1 < args.length; i += 2) {
+            if(args[i].equals("-seed")) seed = Long.parseLong(args[i+1]);
+            if(args[i].equals("-warps")) warps = Integer.parseInt(args[i+1]);
+            if(args[i].equals("-density")) density = Double.parseDouble(args[i+1]);
+            if(args[i].equals("-o")) file = args[i+1];
+        }
+        OutputStream os = file == null ? System.out : new FileOutputStream(file);
+        Writer out = new BufferedWriter(new OutputStreamWriter(os, "US-ASCII"), 1 << 16);
+        int a = Integer.parseInt(args[1]), b = Integer.parseInt(args[2]);
+        if(args[0].equals("perfect")) perfect(a, b, warps, seed, out);
+        else if(args[0].equals("rooms")) rooms(a, b, density, warps, seed, out);
+        else if(args[0].equals("graph")) graph(a, b, seed, out);
+        else throw new IllegalArgumentException("unknown kind: " + args[0]);
+        if(file != null) out.close();
+    }
+}
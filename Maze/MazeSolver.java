@@ -26,7 +26,8 @@ class MazeSolver {
      * なお，メソッドの最初の方で　Adapter<Pos> の新しいインスタンスを生成しているため，引数に Adapter<Pos> collection_instance を受け取るのは無駄に思うかもしれない．
      * しかし，Java ではある型の新しいインスタンスを作るためにはその型の別のインスタンスが手元にある必要がある（もしくはその型の Class オブジェクトがほしい）．そのため，余計な引数を受け取る実装になっている．
      */
-    public static <Pos> void solve(Maze<Pos> m, Adapter<Pos> collection) {
+    public static <Pos> SearchResult<Pos> solve(Maze<Pos> m, Adapter<Pos> collection) {
+        SearchResult<Pos> r = new SearchResult<Pos>("generic-" + collection.getClass().getSimpleName()); // 探索の統計
         // 「ある位置に、どの位置から来たか？」を記録する連想配列
         HashMap<Pos, Pos> prev = new HashMap<Pos, Pos>();
         // これからチェックすべき位置を貯める構造を内部に用意させる
@@ -35,6 +36,21 @@ class MazeSolver {
         // TODO: あとは BFSMazeSolver.solve と DFSMazeSolver.solve のコードの続きを、
         // その差異の部分を Adapter<Pos> のメソッド呼び出しに置き換えつつ記述
         HashSet<Pos> seen = new HashSet<Pos>();
+        // 隣の位置 n を調べる訪問者．まだ入れてないなら入れて，from から来たと記録する．
+        // 探索全体でひとつだけ作り，from を書き換えながら使い回す
+        class Expand implements NeighborVisitor<Pos> {
+            Pos from;
+            public void visit(Pos n) {
+                if(!seen.contains(n)) {
+                    n = m.copy(n); // 迷路が位置を使い回していても保持できるように
+                    collection.addValue(n);
+                    r.frontier(collection.size());
+                    seen.add(n);
+                    prev.put(n, from); // n への移動は from からであった、という記録
+                }
+            }
+        }
+        Expand expand = new Expand();
         Pos st = m.getStart();
         collection.addValue(m.getStart());
         seen.add(m.getStart());
@@ -47,19 +63,16 @@ class MazeSolver {
                     ps.add(c);
                 }
                 Collections.reverse(ps); // 経路を正しい向きに直す
+                r.finish(ps, seen.size());
                 m.printAnswer(ps); // 答えを出力
-                return;
-            }
-            List<Pos> ns = m.getNeighbors(p);
-            for(Pos n: ns){
-                if(!seen.contains(n)){
-                    collection.addValue(n);
-                    seen.add(n);
-                    prev.put(n,p);
-                }
+                return r;
             }
+            expand.from = p;
+            r.expanded++;
+            m.forEachNeighbor(p, expand); // 隣の位置をリストにせずに一つずつ調べる
         }
         System.out.println("impossible");
+        return r.finish(null, seen.size());
     }
 }
 
@@ -0,0 +1,11 @@
+/**
+ * {@code Maze.forEachNeighbor} で移動可能な位置を一つずつ受け取る訪問者．
+ * @param <Pos> 迷路の位置の型．
+ */
+interface NeighborVisitor<Pos> {
+    /**
+     * 移動可能な位置を一つ受け取る．
+     * @param n 移動可能な位置．呼び出しの間だけ有効．
+     */
+    void visit(Pos n);
+}
@@ -0,0 +1,253 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+/**
+ * 位置を int で表す迷路（{@code IntMaze}）の，複数スレッドによる幅優先探索．
+ * スタートからの距離が同じ位置の集まり（フロンティア）を一段ずつ求め，一段の中の仕事を {@code ForkJoinPool} で分ける．<br>
+ * 各段は次のどちらかで求める：<br>
+ * 　トップダウン：フロンティアの各位置の隣を調べ，まだ訪れていなければ訪れる．
+ * 訪問済みの印はビット列で，複数のスレッドが同じ位置を見つけたら compareAndSet に勝った方だけが記録する．<br>
+ * 　ボトムアップ：まだ訪れていない各位置について，そこへ移動可能な位置（{@code getPredecessors}）にフロンティアの位置があるかを調べる．
+ * 位置を 64 個ずつ（ビット列の1語ずつ）担当が決まっているので，記録で競合しない．
+ * フロンティアが大きい（残りの位置に比べて）ときはこちらの方が調べる数が少ない．<br>
+ * 次のフロンティアは，分けた仕事ごとの配列に貯め，段の終わりにつなげる．
+ * ゴールを見つけた段で止めて，「どの位置から来たか？」の記録をたどるので，最短経路が求まる．<br>
+ * 迷路の {@code getNeighbors}，{@code getPredecessors}，{@code isGoal} は複数のスレッドから同時に呼ばれる．
+ * {@code TextMaze} などの呼び出し回数のカウンタは同期していないので，表示される回数はおおよそのもの．
+ */
+class ParallelBFSMazeSolver {
+    /**
+     * 一つの仕事で扱うフロンティアの位置の数（トップダウン），またはビット列の語の数（ボトムアップ）．
+     */
+    static final int GRAIN = 1 << 10;
+    /**
+     * フロンティアの大きさの ALPHA 倍が，まだ訪れていない位置の数を超えたらボトムアップにする．
+     */
+    static final int ALPHA = 14;
+    /**
+     * フロンティアの大きさの BETA 倍が，位置の総数を下回ったらトップダウンに戻す．
+     */
+    static final int BETA = 24;
+
+    /**
+     * 共通の {@code ForkJoinPool} で，スタートからゴールへの経路を探して出力する．
+     * @param m 迷路．
+     * @return 探索の結果と統計．
+     */
+    public static SearchResult<Integer> solve(IntMaze m) {
+        return solve(m, ForkJoinPool.commonPool());
+    }
+    /**
+     * 指定した {@code ForkJoinPool} で，スタートからゴールへの経路を探して出力する．見つからなければ "impossible" を出力する．
+     * @param m 迷路．
+     * @param pool 各段の仕事を動かすスレッドプール．
+     * @return 探索の結果と統計．割り当てメモリ量は呼び出したスレッドの分のみで，プールのスレッドの分は含まない．
+     */
+    public static SearchResult<Integer> solve(IntMaze m, ForkJoinPool pool) {
+        SearchResult<Integer> r = new SearchResult<Integer>("parallel-bfs"); // 探索の統計
+        Search s = new Search(m);
+        int goal = s.run(pool, r);
+        if(goal < 0) {
+            System.out.println("impossible");
+            return r.finish(null, s.visited);
+        }
+        int [] ps = IntMazeSolver.path(s.prev, goal);
+        r.finish(SearchResult.asList(ps), s.visited);
+        m.printAnswer(ps);
+        return r;
+    }
+
+    /**
+     * 一回の探索の状態．
+     */
+    static class Search {
+        final IntMaze m;
+        final int n;
+        /**
+         * 「ある位置に、どの位置から来たか？」を記録する配列．スタートは -1．
+         * 訪れた位置の分だけが意味を持ち，それぞれ訪れた一つのスレッドだけが書く．
+         */
+        final int [] prev;
+        /**
+         * 訪れた位置のビット列．
+         */
+        final AtomicLongArray seen;
+        /**
+         * 見つけたゴール．まだなら -1．
+         */
+        final AtomicInteger goal = new AtomicInteger(-1);
+        /**
+         * 現在のフロンティア．
+         */
+        int [] front;
+        /**
+         * 現在のフロンティアのビット列（ボトムアップで使う）．なければ {@code null}．
+         */
+        long [] frontBits;
+        /**
+         * ボトムアップで求めた次のフロンティアのビット列．
+         */
+        long [] nextBits;
+        /**
+         * 仕事ごとの，次のフロンティアの位置．
+         */
+        int [][] outs;
+        /**
+         * この段をボトムアップで求めるか．
+         */
+        boolean bottomUp;
+        /**
+         * 訪れた位置の数．
+         */
+        long visited = 1;
+
+        Search(IntMaze m) {
+            this.m = m;
+            n = m.size();
+            prev = new int[n];
+            seen = new AtomicLongArray((n + 63) >>> 6);
+        }
+        /**
+         * 段ごとに探索を進め，ゴールを見つけたらそれを返す．
+         * @param pool 各段の仕事を動かすスレッドプール．
+         * @param r 探索の統計（調べた位置の数とフロンティアの大きさの最大値を記録する）．
+         * @return ゴール位置．辿り着けなければ -1．
+         */
+        int run(ForkJoinPool pool, SearchResult<Integer> r) {
+            int st = m.getStartId();
+            prev[st] = -1;
+            visit(st);
+            if(m.isGoal(st)) return st;
+            front = new int[] {st};
+            long unvisited = n - 1;
+            while(front.length > 0 && goal.get() < 0) {
+                r.frontier(front.length);
+                // 方向の切り替え（フロンティアが大きければボトムアップ，小さくなったらトップダウン）
+                if(!bottomUp && (long)front.length * ALPHA > unvisited) {
+                    bottomUp = true;
+                    frontBits = null;
+                } else if(bottomUp && (long)front.length * BETA < n) {
+                    bottomUp = false;
+                }
+                int work;
+                if(bottomUp) {
+                    if(frontBits == null) { // トップダウンの段から切り替えたところ
+                        frontBits = new long[seen.length()];
+                        for(int u : front) frontBits[u >>> 6] |= 1L << u;
+                    }
+                    nextBits = new long[seen.length()];
+                    work = seen.length();
+                    r.expanded += unvisited; // まだ訪れていない位置を調べる
+                } else {
+                    work = front.length;
+                    r.expanded += front.length;
+                }
+                int chunks = (work + GRAIN - 1) / GRAIN;
+                outs = new int[chunks][];
+                pool.invoke(new Level(this, 0, chunks));
+                // 仕事ごとの次のフロンティアをつなげる
+                int total = 0;
+                for(int [] o : outs) total += o.length;
+                int [] next = new int[total];
+                int k = 0;
+                for(int [] o : outs) {
+                    System.arraycopy(o, 0, next, k, o.length);
+                    k += o.length;
+                }
+                front = next;
+                frontBits = bottomUp ? nextBits : null;
+                unvisited -= total;
+                visited += total;
+            }
+            return goal.get();
+        }
+        /**
+         * 位置 {@code v} に訪問済みの印をつける．
+         * @return 印をつけたのがこの呼び出しなら {@code true}．既についていれば {@code false}．
+         */
+        boolean visit(int v) {
+            int i = v >>> 6;
+            long bit = 1L << v;
+            for(;;) {
+                long w = seen.get(i);
+                if((w & bit) != 0) return false;
+                if(seen.compareAndSet(i, w, w | bit)) return true;
+            }
+        }
+        /**
+         * {@code c} 番目の仕事をして，見つけた次のフロンティアの位置を {@code outs[c]} に入れる．
+         * @param c 仕事の番号．
+         */
+        void chunk(int c) {
+            int [] ns = new int[m.maxDegree()]; // 隣の位置を受け取る配列
+            int [] buf = new int[64];
+            int k = 0;
+            if(!bottomUp) {
+                int hi = Math.min((c + 1) * GRAIN, front.length);
+                for(int x = c * GRAIN; x < hi; x++) {
+                    int u = front[x];
+                    int d = m.getNeighbors(u, ns);
+                    for(int y = 0; y < d; y++) {
+                        int v = ns[y];
+                        if(visit(v)) {
+                            prev[v] = u;
+                            if(k == buf.length) buf = Arrays.copyOf(buf, 2 * k);
+                            buf[k++] = v;
+                            if(m.isGoal(v)) goal.compareAndSet(-1, v);
+                        }
+                    }
+                }
+            } else {
+                int hi = Math.min((c + 1) * GRAIN, seen.length());
+                for(int i = c * GRAIN; i < hi; i++) {
+                    long rest = ~seen.get(i); // まだ訪れていない位置
+                    if(i == seen.length() - 1 && (n & 63) != 0) rest &= (1L << n) - 1; // 範囲外のビットは除く
+                    long found = 0;
+                    while(rest != 0) {
+                        int v = (i << 6) + Long.numberOfTrailingZeros(rest);
+                        rest &= rest - 1;
+                        int d = m.getPredecessors(v, ns);
+                        for(int y = 0; y < d; y++) {
+                            int u = ns[y];
+                            if((frontBits[u >>> 6] & (1L << u)) != 0) { // v へ移動可能なフロンティアの位置
+                                prev[v] = u;
+                                found |= 1L << v;
+                                if(k == buf.length) buf = Arrays.copyOf(buf, 2 * k);
+                                buf[k++] = v;
+                                if(m.isGoal(v)) goal.compareAndSet(-1, v);
+                                break;
+                            }
+                        }
+                    }
+                    if(found != 0) { // この語を書くのはこの仕事だけ
+                        seen.set(i, seen.get(i) | found);
+                        nextBits[i] = found;
+                    }
+                }
+            }
+            outs[c] = Arrays.copyOf(buf, k);
+        }
+    }
+
+    /**
+     * 一段の仕事 {@code [lo, hi)} を，一つになるまで二つに分けて並列に行う．
+     */
+    static class Level extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        final Search s;
+        final int lo, hi;
+        Level(Search s, int lo, int hi) {
+            this.s = s;
+            this.lo = lo;
+            this.hi = hi;
+        }
+        protected void compute() {
+            if(hi - lo == 1) {
+                s.chunk(lo);
+            } else {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new Level(s, lo, mid), new Level(s, mid, hi));
+            }
+        }
+    }
+}
@@ -0,0 +1,164 @@
+import java.util.*;
+import java.lang.management.*;
+/**
+ * 迷路の解法（{@code solve}）が返す，探索の結果と統計．
+ * 解法を比べられるように，見つけた経路のほかに次の値を持つ：<br>
+ * 　expanded : 隣の位置を調べた位置の数．<br>
+ * 　peakFrontier : これからチェックすべき位置（キュー，スタック，ヒープ，フロンティア）の数の最大値．<br>
+ * 　visited : 訪問済みとして記録した位置の数．<br>
+ * 　elapsedNanos : 探索にかかった時間（ナノ秒）．答えの出力は含まない．<br>
+ * 　allocatedBytes : 探索中に割り当てたメモリ量（バイト）．{@code solve} を呼んだスレッドの分のみ．
+ * @param <Pos> 迷路の位置の型．
+ */
+public class SearchResult<Pos> {
+    /**
+     * スレッドごとの割り当てメモリ量を取得するためのオブジェクト．
+     */
+    private static final com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+    /**
+     * 解法の名前．
+     */
+    final String solver;
+    /**
+     * スタートからゴールに至る位置の並び．見つからなければ {@code null}．
+     */
+    List<Pos> path;
+    /**
+     * 隣の位置を調べた位置の数．
+     */
+    long expanded;
+    /**
+     * これからチェックすべき位置の数の最大値．
+     */
+    long peakFrontier;
+    /**
+     * 訪問済みとして記録した位置の数．
+     */
+    long visited;
+    /**
+     * 探索にかかった時間（ナノ秒）．
+     */
+    long elapsedNanos;
+    /**
+     * 探索中に割り当てたメモリ量（バイト）．
+     */
+    long allocatedBytes;
+    /**
+     * 計測を始めた時刻と，そのときの割り当てメモリ量．
+     */
+    private long t0, a0;
+    /**
+     * 解法の名前を受け取り，計測を始めるコンストラクタ．
+     * @param solver 解法の名前．
+     */
+    SearchResult(String solver) {
+        this.solver = solver;
+        a0 = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        t0 = System.nanoTime();
+    }
+    /**
+     * これからチェックすべき位置の数を受け取り，最大値を更新する．
+     * @param size これからチェックすべき位置の数．
+     */
+    void frontier(long size) {
+        if(size > peakFrontier) peakFrontier = size;
+    }
+    /**
+     * 計測を終え，見つけた経路を記録する．
+     * @param path スタートからゴールに至る位置の並び．見つからなければ {@code null}．
+     * @param visited 訪問済みとして記録した位置の数．
+     * @return この結果．
+     */
+    SearchResult<Pos> finish(List<Pos> path, long visited) {
+        elapsedNanos = System.nanoTime() - t0;
+        allocatedBytes = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - a0;
+        this.path = path;
+        this.visited = visited;
+        return this;
+    }
+    /**
+     * 経路が見つかったかを返す．
+     * @return 見つかっていれば {@code true}．
+     */
+    public boolean found() {
+        return path != null;
+    }
+    /**
+     * 経路の長さ（移動の回数）を返す．
+     * @return 経路の長さ．見つからなければ -1．
+     */
+    public int length() {
+        return path == null ? -1 : path.size() - 1;
+    }
+    /**
+     * 位置の並びを int の配列のまま見せるリスト．位置を int で表す解法で使う．
+     * @param ps 位置の並び．
+     * @return {@code ps} を見せるリスト．{@code ps} が {@code null} なら {@code null}．
+     */
+    static List<Integer> asList(final int [] ps) {
+        if(ps == null) return null;
+        return new AbstractList<Integer>() {
+            public Integer get(int i) {
+                return ps[i];
+            }
+            public int size() {
+                return ps.length;
+            }
+        };
+    }
+    /**
+     * CSV の見出しの行を返す．
+     * @return 見出しの行．
+     */
+    public static String csvHeader() {
+        return "maze,solver,found,length,expanded,peakFrontier,visited,elapsedNanos,allocatedBytes";
+    }
+    /**
+     * CSV の1行にして返す．
+     * @param maze 迷路の名前（ファイル名など）．
+     * @return CSV の1行．
+     */
+    public String toCsv(String maze) {
+        return maze + "," + solver + "," + found() + "," + length() + "," + expanded + "," + peakFrontier + ","
+            + visited + "," + elapsedNanos + "," + allocatedBytes;
+    }
+    /**
+     * JSON のオブジェクトにして返す．
+     * @param maze 迷路の名前（ファイル名など）．
+     * @return JSON のオブジェクト（1行）．
+     */
+    public String toJson(String maze) {
+        return "{\"maze\": " + quote(maze) + ", \"solver\": " + quote(solver) + ", \"found\": " + found()
+            + ", \"length\": " + length() + ", \"expanded\": " + expanded + ", \"peakFrontier\": " + peakFrontier
+            + ", \"visited\": " + visited + ", \"elapsedNanos\": " + elapsedNanos
+            + ", \"allocatedBytes\": " + allocatedBytes + "}";
+    }
+    /**
+     * 統計を指定された形式で標準出力に出力する．
+     * @param maze 迷路の名前（ファイル名など）．
+     * @param format {@code -json} か {@code -csv}．{@code null} なら何もしない．
+     */
+    public void printStats(String maze, String format) {
+        if(format == null) return;
+        if(format.equals("-json")) {
+            System.out.println(toJson(maze));
+        } else {
+            System.out.println(csvHeader());
+            System.out.println(toCsv(maze));
+        }
+    }
+    /**
+     * 文字列を JSON の文字列にする．
+     */
+    private static String quote(String s) {
+        StringBuilder sb = new StringBuilder("\"");
+        for(int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if(c == '"' || c == '\\') sb.append('\\').append(c);
+            else if(c < 0x20) sb.append(String.format("\\u%04x", (int)c));
+            else sb.append(c);
+        }
+        return sb.append('"').toString();
+    }
+}
@@ -2,7 +2,7 @@ import java.util.*;
 import java.io.*;
 /**
  * テキストファイルから読み込む長方形の迷路クラス．
- * 位置は int の組 (i, j)．<br>
+ * 位置は int の組 (i, j)．{@code IntMaze} としては，マス (i, j) を {@code i * w + j} で表す．<br>
  * 入力ファイルの形式は次の通り：<br>
  * 　先頭行に高さ h と幅 w が空白区切りである．<br>
  * 　以降の h 行は，それぞれ w 文字の文字列であり迷路の横一行分を表す． <br>
@@ -10,7 +10,7 @@ import java.io.*;
  * 　　S : スタート．必ずちょうど一つ存在する．<br>
  * 　　G : ゴール．必ずちょうど一つ存在する．<br>
  */
-public class TextMaze implements Maze<IntPair> {
+public class TextMaze implements Maze<IntPair>, IntMaze {
     /** 
      * 迷路の高さ．
      */
@@ -72,8 +72,8 @@ public class TextMaze implements Maze<IntPair> {
         return new IntPair(start); // 念の為、コピーして返す
     }
     // 4方向 (1,0), (0,1), (-1,0), (0,-1) 
-    private static final int [] di = new int[] {1, 0, -1, 0};
-    private static final int [] dj = new int[] {0, 1, 0, -1};
+    static final int [] di = new int[] {1, 0, -1, 0};
+    static final int [] dj = new int[] {0, 1, 0, -1};
     /**
      * 指定された位置{@code p}から移動可能な位置のリストを返す．
      * @param p 指定位置．
@@ -95,6 +95,42 @@ public class TextMaze implements Maze<IntPair> {
         }
         return ps;
     }
+    /**
+     * {@code forEachNeighbor} で訪問者に渡す位置．隣の位置ごとに書き換えて使い回す．
+     */
+    private final IntPair probe = new IntPair(0, 0);
+    /**
+     * 指定された位置{@code p}から移動可能な位置のそれぞれについて，{@code v.visit} を呼ぶ．
+     * 渡す位置は一つの {@code IntPair} を書き換えて使い回すので，保持するなら {@code copy} すること．
+     * また，{@code visit} の中からこの迷路の {@code forEachNeighbor} を呼んではいけない．
+     * @param p 指定位置．
+     * @param v 移動可能な位置を受け取る訪問者．
+     */
+    public void forEachNeighbor(IntPair p, NeighborVisitor<IntPair> v) {
+        cnt++; // getNeightbors の呼び出し回数カウント（同じ数え方にする）
+        if(field[p.i][p.j] == '*') { // 壁の中にいる -> 移動できない
+            return;
+        }
+        int i = p.i; // p が probe のこともあるので先に取り出しておく
+        int j = p.j;
+        for(int k = 0; k < 4; k++) { // 4 方向を順に確認
+            int ii = i + di[k];
+            int jj = j + dj[k];
+            if(ii >= 0 && jj >= 0 && ii < h && jj < w && field[ii][jj] != '*') {
+                probe.i = ii;
+                probe.j = jj;
+                v.visit(probe);
+            }
+        }
+    }
+    /**
+     * {@code forEachNeighbor} で渡された位置の複製を返す．
+     * @param p {@code forEachNeighbor} で渡された位置．
+     * @return {@code p} の複製．
+     */
+    public IntPair copy(IntPair p) {
+        return new IntPair(p);
+    }
     /**
      * 指定された位置{@code p}がゴールかどうかを返す．
      * @param p 指定位置．
@@ -103,6 +139,90 @@ public class TextMaze implements Maze<IntPair> {
     public boolean isGoal(IntPair p) {
         return goal.equals(p);
     }
+    /**
+     * ゴールである位置（ちょうど一つ）を返す．
+     * @return ゴール位置だけからなるリスト．
+     */
+    public List<IntPair> getGoals() {
+        ArrayList<IntPair> gs = new ArrayList<IntPair>();
+        gs.add(new IntPair(goal)); // 念の為、コピーして返す
+        return gs;
+    }
+    /**
+     * {@code AStarMazeSolver} で使う，ゴールまでの距離の見積もりを返す．
+     * 1回の移動では縦か横に1マスしか進めないので，ゴールとのマンハッタン距離を見積もりとする．
+     * @return ゴールまでのマンハッタン距離を返す見積もり．
+     */
+    public Heuristic<IntPair> heuristic() {
+        return new Heuristic<IntPair>() {
+            public int estimate(IntPair p) {
+                return Math.abs(p.i - goal.i) + Math.abs(p.j - goal.j);
+            }
+        };
+    }
+    /**
+     * 位置の総数（マスの数）を返す．
+     * @return 位置の総数．
+     */
+    public int size() {
+        return h * w;
+    }
+    /**
+     * 一つの位置から移動可能な位置の数の最大値（4方向）を返す．
+     * @return 4．
+     */
+    public int maxDegree() {
+        return 4;
+    }
+    /**
+     * 迷路のスタート位置を {@code i * w + j} の形で取得．
+     * @return スタート位置．
+     */
+    public int getStartId() {
+        return start.i * w + start.j;
+    }
+    /**
+     * 指定された位置{@code p}から移動可能な位置を{@code out}に書き込む．{@code getNeighbors(IntPair)} の int 版．
+     * @param p 指定位置（{@code i * w + j}）．
+     * @param out 移動可能な位置を書き込む配列．
+     * @return 書き込んだ位置の個数．
+     */
+    public int getNeighbors(int p, int [] out) {
+        cnt++; // getNeightbors の呼び出し回数カウント
+        int i = p / w;
+        int j = p % w;
+        if(field[i][j] == '*') { // 壁の中にいる -> 移動できない
+            return 0;
+        }
+        int k = 0;
+        for(int d = 0; d < 4; d++) { // 4 方向を順に確認
+            int ii = i + di[d];
+            int jj = j + dj[d];
+            if(ii >= 0 && jj >= 0 && ii < h && jj < w && field[ii][jj] != '*') {
+                out[k++] = ii * w + jj;
+            }
+        }
+        return k;
+    }
+    /**
+     * 指定された位置{@code p}（{@code i * w + j}）がゴールかどうかを返す．
+     * @param p 指定位置．
+     * @return 指定位置{@code p}がゴールであれば{@code true}．そうでなければ{@code false}．
+     */
+    public boolean isGoal(int p) {
+        return p == goal.i * w + goal.j;
+    }
+    /**
+     * スタートからゴールに至る位置（{@code i * w + j}）の並びを受け取り，{@code printAnswer(List)} と同じく出力する．
+     * @param ps スタートからゴールに至る位置の並び．
+     */
+    public void printAnswer(int [] ps) {
+        ArrayList<IntPair> l = new ArrayList<IntPair>();
+        for(int p : ps) {
+            l.add(new IntPair(p / w, p % w));
+        }
+        printAnswer(l);
+    }
     /**
      * スタートからゴールに至る位置の並びを受け取り、それらの位置に{@code .}をおいた迷路を出力する．
      * @param ps スタートからゴールに至る位置の並び．スタートとゴールを両端に持つ．
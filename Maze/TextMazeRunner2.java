@@ -6,23 +6,49 @@ import java.io.*;
 class TextMazeRunner2 {
     public static void main(String [] args) throws Exception {
         if(args.length < 1) {
-            System.out.println("java TextMazeRunner2 mazefile [-b | -d]");
+            System.out.println("java TextMazeRunner2 mazefile [-b | -d | -bi | -a | -aw | -p] [-json | -csv]");
             System.out.println("  -b : using BFS (default)");
             System.out.println("  -d : using DFS");
+            System.out.println("  -bi : using bidirectional BFS");
+            System.out.println("  -a : using A* with the Manhattan distance");
+            System.out.println("  -aw : using A* on text-mazes with warps");
+            System.out.println("  -p : using multi-threaded BFS");
+            System.out.println("  -json, -csv : print search statistics in JSON / CSV after the answer");
             return;
         }
         boolean bfs = true;
-        if(args.length >= 2) {
-            if(args[1].equals("-d")) bfs = false;
+        boolean bi = false;
+        boolean astar = false;
+        boolean warp = false;
+        boolean parallel = false;
+        String stats = null; // 統計の出力形式
+        for(int i = 1; i < args.length; i++) {
+            if(args[i].equals("-d")) bfs = false;
+            if(args[i].equals("-bi")) bi = true;
+            if(args[i].equals("-a")) astar = true;
+            if(args[i].equals("-aw")) astar = warp = true;
+            if(args[i].equals("-p")) parallel = true;
+            if(args[i].equals("-json") || args[i].equals("-csv")) stats = args[i];
         }
         // MyQueue と MyStack がともに MyCollection<E> を実装するため、
         // BFS と DFS とに同じ MazeSolver.solve で対応できる。
         // （という形に実装せよ）
-        TextMaze tm = new TextMaze(args[0]);
-        if(bfs) {
-            MazeSolver.solve(tm, new MyQueue<IntPair>());
+        // 探索は位置を int で表す IntMazeSolver で行う（IntQueue と IntStack は MyQueue と MyStack の int 版）
+        TextMaze tm = warp ? new TextMazeWithWarp(args[0]) : new TextMaze(args[0]);
+        SearchResult<?> r;
+        if(astar) {
+            // ゴールまでの距離の見積もりは迷路が持っている（ワープありならワープも考えたもの）
+            r = AStarMazeSolver.solve(tm, tm.heuristic());
+        } else if(parallel) {
+            r = ParallelBFSMazeSolver.solve(tm);
+        } else if(bi) {
+            // スタートとゴールの両側から探す（位置は IntPair のまま）
+            r = BidirectionalBFSMazeSolver.solve(tm);
+        } else if(bfs) {
+            r = IntMazeSolver.solve(tm, new IntQueue());
         } else {
-            MazeSolver.solve(tm, new MyStack<IntPair>());
+            r = IntMazeSolver.solve(tm, new IntStack());
         }
+        r.printStats(args[0], stats);
     }
 }
\ No newline at end of file
@@ -17,6 +17,14 @@ class TextMazeWithWarp extends TextMaze {
      * ワープ出口の情報を保持する連想配列．
      */
     private HashMap<Character,IntPair> warpOuts;
+    /**
+     * ワープ入口の情報を保持する連想配列（キーは対応する出口の文字）．逆向きの探索で使う．
+     */
+    private HashMap<Character,IntPair> warpIns;
+    /**
+     * {@code forEachPredecessor} で訪問者に渡す位置．書き換えて使い回す．
+     */
+    private final IntPair back = new IntPair(0, 0);
     /**
      * ファイル名を受け取り，迷路を読み込むコンストラクタ．
      * @param file ファイル名（パス）の文字列．
@@ -26,6 +34,7 @@ class TextMazeWithWarp extends TextMaze {
         super(file);
         // ワープ出口の情報をいれる連想配列のインスタンスを生成
         warpOuts = new HashMap<Character,IntPair>();
+        warpIns = new HashMap<Character,IntPair>();
 
         // TODO: ここらへんをうめよ
         // 迷路盤面上を走査し、ワープ出口の情報を warpOuts に集める
@@ -49,6 +58,9 @@ class TextMazeWithWarp extends TextMaze {
                 if(temp.equals('e')) {
                     warpOuts.put('e',new IntPair(i,j));
                 }
+                if(temp >= 'A' && temp <= 'E') {
+                    warpIns.put((char)(temp - 'A' + 'a'),new IntPair(i,j));
+                }
             }
         }
     }
@@ -81,5 +93,147 @@ class TextMazeWithWarp extends TextMaze {
         // あとの処理は親クラスの処理と同じ
         return super.getNeighbors(p);
     }
+    /**
+     * 指定された位置{@code p}から移動可能な位置のそれぞれについて，{@code v.visit} を呼ぶ．
+     * @param p 指定位置．
+     * @param v 移動可能な位置を受け取る訪問者．
+     */
+    public void forEachNeighbor(IntPair p, NeighborVisitor<IntPair> v) {
+        // p がワープ入口であるならば、p をワープ出口の座標に変更しておく
+        char c = field[p.i][p.j];
+        if(c >= 'A' && c <= 'E') {
+            p = warpOuts.get((char)(c - 'A' + 'a'));
+        }
+        // あとの処理は親クラスの処理と同じ
+        super.forEachNeighbor(p, v);
+    }
+    /**
+     * 指定された位置{@code p}へ移動可能な位置のそれぞれについて，{@code v.visit} を呼ぶ．
+     * ワープは一方通行なので，{@code forEachNeighbor} と同じにはならない：<br>
+     * 　隣のマスのうち，ワープ入口でないもの（入口からは出口の隣にしか移動できない）．<br>
+     * 　出口が {@code p} の隣にあるワープの入口．
+     * @param p 指定位置．
+     * @param v {@code p} へ移動可能な位置を受け取る訪問者．
+     */
+    public void forEachPredecessor(IntPair p, NeighborVisitor<IntPair> v) {
+        cnt++; // getNeightbors の呼び出し回数カウント（同じ数え方にする）
+        int i = p.i; // p が back のこともあるので先に取り出しておく
+        int j = p.j;
+        if(field[i][j] == '*') { // 壁の中には移動できない
+            return;
+        }
+        for(int k = 0; k < 4; k++) { // 4 方向を順に確認
+            int ii = i + di[k];
+            int jj = j + dj[k];
+            char c = ii >= 0 && jj >= 0 && ii < h && jj < w ? field[ii][jj] : '*';
+            if(c != '*' && !(c >= 'A' && c <= 'E')) {
+                back.i = ii;
+                back.j = jj;
+                v.visit(back);
+            }
+        }
+        for(Map.Entry<Character,IntPair> e : warpIns.entrySet()) { // 出口が p の隣にある入口
+            IntPair out = warpOuts.get(e.getKey());
+            if(Math.abs(out.i - i) + Math.abs(out.j - j) == 1) {
+                back.i = e.getValue().i;
+                back.j = e.getValue().j;
+                v.visit(back);
+            }
+        }
+    }
+    /**
+     * 指定された位置{@code p}へ移動可能な位置を{@code out}に書き込む．{@code forEachPredecessor} の int 版．
+     * @param p 指定位置（{@code i * w + j}）．
+     * @param out 移動可能な位置を書き込む配列．
+     * @return 書き込んだ位置の個数．
+     */
+    public int getPredecessors(int p, int [] out) {
+        cnt++; // getNeightbors の呼び出し回数カウント（同じ数え方にする）
+        int i = p / w;
+        int j = p % w;
+        if(field[i][j] == '*') { // 壁の中には移動できない
+            return 0;
+        }
+        int k = 0;
+        for(int d = 0; d < 4; d++) { // 4 方向を順に確認（ワープ入口からは出口の隣にしか移動できない）
+            int ii = i + di[d];
+            int jj = j + dj[d];
+            char c = ii >= 0 && jj >= 0 && ii < h && jj < w ? field[ii][jj] : '*';
+            if(c != '*' && !(c >= 'A' && c <= 'E')) {
+                out[k++] = ii * w + jj;
+            }
+        }
+        for(Map.Entry<Character,IntPair> e : warpIns.entrySet()) { // 出口が p の隣にある入口
+            IntPair q = warpOuts.get(e.getKey());
+            if(Math.abs(q.i - i) + Math.abs(q.j - j) == 1) {
+                out[k++] = e.getValue().i * w + e.getValue().j;
+            }
+        }
+        return k;
+    }
+    /**
+     * 一つの位置から移動可能な位置，一つの位置へ移動可能な位置の数の最大値を返す．
+     * 位置へ移動可能な位置には，隣の4マスに加えて，出口が隣にあるワープ入口が入りうる．
+     * @return 4 + ワープ入口の数．
+     */
+    public int maxDegree() {
+        return 4 + warpIns.size();
+    }
+    /**
+     * {@code AStarMazeSolver} で使う，ワープも考えたゴールまでの距離の見積もりを返す．
+     * ワープ入口 X（出口 x）からは x の隣に1回で移動できるので，X からゴールまでは少なくとも x とゴールのマンハッタン距離かかる．
+     * ワープを続けて使う場合も含めて，入口ごとにこの下限 H(X) を
+     * 　H(X) = min(|x - G|, min_Y (|x - Y| + H(Y)))　（|・| はマンハッタン距離）<br>
+     * として先に求めておき，位置 p の見積もりを min(|p - G|, min_X (|p - X| + H(X))) とする．
+     * @return ワープを考えたゴールまでの距離の見積もり．
+     */
+    public Heuristic<IntPair> heuristic() {
+        final int k = warpIns.size();
+        final IntPair [] ins = new IntPair[k];
+        final int [] hs = new int[k];
+        int [] outi = new int[k], outj = new int[k];
+        int c = 0;
+        for(Map.Entry<Character,IntPair> e : warpIns.entrySet()) {
+            ins[c] = e.getValue();
+            IntPair out = warpOuts.get(e.getKey());
+            outi[c] = out.i;
+            outj[c] = out.j;
+            hs[c] = Math.abs(out.i - goal.i) + Math.abs(out.j - goal.j); // ワープを続けて使わない場合
+            c++;
+        }
+        for(int r = 0; r < k; r++) { // ワープは高々 k 回続けて使えば十分なので k 回更新する（ベルマン・フォード法）
+            for(int x = 0; x < k; x++) {
+                for(int y = 0; y < k; y++) {
+                    int d = Math.abs(outi[x] - ins[y].i) + Math.abs(outj[x] - ins[y].j) + hs[y];
+                    if(d < hs[x]) hs[x] = d;
+                }
+            }
+        }
+        return new Heuristic<IntPair>() {
+            public int estimate(IntPair p) {
+                int best = Math.abs(p.i - goal.i) + Math.abs(p.j - goal.j);
+                for(int x = 0; x < k; x++) {
+                    best = Math.min(best, Math.abs(p.i - ins[x].i) + Math.abs(p.j - ins[x].j) + hs[x]);
+                }
+                return best;
+            }
+        };
+    }
+    /**
+     * 指定された位置{@code p}から移動可能な位置を{@code out}に書き込む．{@code getNeighbors(IntPair)} の int 版．
+     * @param p 指定位置（{@code i * w + j}）．
+     * @param out 移動可能な位置を書き込む配列．
+     * @return 書き込んだ位置の個数．
+     */
+    public int getNeighbors(int p, int [] out) {
+        // p がワープ入口であるならば、p をワープ出口の位置に変更しておく
+        char c = field[p / w][p % w];
+        if(c >= 'A' && c <= 'E') {
+            IntPair q = warpOuts.get((char)(c - 'A' + 'a'));
+            p = q.i * w + q.j;
+        }
+        // あとの処理は親クラスの処理と同じ
+        return super.getNeighbors(p, out);
+    }
 }
 
@@ -0,0 +1,239 @@
+/*
+ * 電卓全体（「ブロック」の切り出し・トークン分割・「コマンド」の検索と実行・「結果」の表示）のスループットを測るベンチマーク.
+ * 乱数で生成したスクリプトを, メモリ上の入力から電卓に流し込み, 出力は捨てる.
+ * コンパイル & 実行：
+ * javac Calculator.java IntCalc.java MemoCalc.java MatrixCalc.java CalcBench.java
+ * java CalcBench
+ * java CalcBench -lines 100000 -size 32
+ */
+
+import java.util.*;
+import java.io.*;
+import java.lang.management.*;
+
+/**
+ * 電卓のスクリプトを実行して, 1秒あたりの入力行数（lines/s）と1行あたりの割り当てメモリ量（B/line）を測るクラス.
+ * スクリプトは4種類（{@code IntCalc} の四則演算, {@code MemoCalc} の変数を使う演算, {@code MatrixCalc} の行列演算, 
+ * 数でない1トークンの行ばかりの {@code IntCalc} 用のもの）で,
+ * それぞれを次の設定で実行して比較する. <br />
+ * interactive : 通常の実行（プロンプトを表示し, 計測あり）. <br />
+ * nostats : 通常の実行から, 「コマンド」ごとの計測（{@code stats}）を外したもの. <br />
+ * batch : パイプライン実行（プロンプトなし, 読み込みと解析は別スレッド）. 計測なし. <br />
+ * なお batch の割り当てメモリ量は実行側のスレッドの分のみで, 読み込みスレッドの分は含まない.
+ */
+class CalcBench {
+    /**
+     * 電卓の種類.
+     */
+    static final String [] kinds = {"int", "memo", "matrix", "keyword"};
+    /**
+     * 実行の設定.
+     */
+    static final String [] configs = {"interactive", "nostats", "batch"};
+    /**
+     * スレッドごとの割り当てメモリ量を取得するためのオブジェクト.
+     */
+    static final com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+
+    /**
+     * {@code IntCalc} 用のスクリプトを生成する. 1行「ブロック」のみからなる.
+     * 値が際限なく大きくならないよう, ときどき新しい値を入力する.
+     * @param lines 行数.
+     * @param rnd 乱数生成器.
+     * @return スクリプト.
+     */
+    static String intScript(int lines, Random rnd) {
+        StringBuilder sb = new StringBuilder();
+        for(int i = 0; i < lines; i++) {
+            switch(rnd.nextInt(7)) {
+            case 0: sb.append(rnd.nextInt(1000000)); break;
+            case 1: sb.append("+ ").append(rnd.nextInt(1000)); break;
+            case 2: sb.append("- ").append(rnd.nextInt(1000)); break;
+            case 3: sb.append("* ").append(rnd.nextInt(9) + 1); break;
+            case 4: sb.append("/ ").append(rnd.nextInt(9) + 1); break;
+            case 5: sb.append("neg"); break;
+            default: sb.append("+ ").append(rnd.nextInt(100)); break;
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+    /**
+     * {@code IntCalc} 用の, ほとんどが {@code neg} の行からなるスクリプトを生成する.
+     * 数の入力の「コマンド」が, 自分宛てでない行を断る速さを測るためのもの.
+     * @param lines 行数.
+     * @return スクリプト.
+     */
+    static String keywordScript(int lines) {
+        StringBuilder sb = new StringBuilder();
+        for(int i = 0; i < lines; i++) {
+            sb.append(i % 16 == 0 ? "12345" : "neg").append('\n');
+        }
+        return sb.toString();
+    }
+    /**
+     * {@code MemoCalc} 用のスクリプトを生成する. 変数 a, b, c への保存・読み出しと, 変数を使った演算を含む.
+     * @param lines 行数.
+     * @param rnd 乱数生成器.
+     * @return スクリプト.
+     */
+    static String memoScript(int lines, Random rnd) {
+        StringBuilder sb = new StringBuilder("store a\nstore b\nstore c\n");
+        String [] vars = {"a", "b", "c"};
+        String [] ops = {"+", "-", "*", "/"};
+        for(int i = 3; i < lines; i++) {
+            String v = vars[rnd.nextInt(vars.length)];
+            switch(rnd.nextInt(6)) {
+            case 0: sb.append(rnd.nextInt(1000000)); break;
+            case 1: sb.append("store ").append(v); break;
+            case 2: sb.append("load ").append(v); break;
+            case 3: sb.append(ops[rnd.nextInt(2)]).append(' ').append(v); break;
+            case 4: sb.append(ops[rnd.nextInt(4)]).append(' ').append(rnd.nextInt(9) + 1); break;
+            default: sb.append("neg"); break;
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+    /**
+     * {@code MatrixCalc} 用のスクリプトを生成する.
+     * {@code mat:} などの複数行「ブロック」による行列の入力と, 変数に保存した行列との演算を含む.
+     * @param lines おおよその行数.
+     * @param size 行列のサイズ.
+     * @param rnd 乱数生成器.
+     * @return スクリプト.
+     */
+    static String matrixScript(int lines, int size, Random rnd) {
+        StringBuilder sb = new StringBuilder();
+        String [] multi = {"mat", "add", "sub", "mul"};
+        String [] single = {"add a", "sub b", "mul b", "trans", "anymul 2", "store b", "load a"};
+        int n = 0;
+        while(n < lines) {
+            if(n == 0 || rnd.nextInt(4) == 0) {
+                // 複数行「ブロック」で行列を入力. 最初は必ず mat で a, b を用意する
+                String c = n == 0 ? "mat" : multi[rnd.nextInt(multi.length)];
+                sb.append(c).append(":\n");
+                for(int i = 0; i < size; i++) {
+                    sb.append('\t');
+                    for(int j = 0; j < size; j++) {
+                        if(j > 0) sb.append(' ');
+                        sb.append(rnd.nextInt(19) - 9);
+                    }
+                    sb.append('\n');
+                }
+                sb.append('\n');
+                n += size + 2;
+                if(n == size + 2) {
+                    sb.append("store a\nstore b\n");
+                    n += 2;
+                }
+            } else {
+                sb.append(single[rnd.nextInt(single.length)]).append('\n');
+                n++;
+            }
+        }
+        return sb.toString();
+    }
+    /**
+     * スクリプトの行数を数える.
+     * @param script スクリプト.
+     * @return 行数.
+     */
+    static int countLines(String script) {
+        int c = 0;
+        for(int i = 0; i < script.length(); i++) {
+            if(script.charAt(i) == '\n') c++;
+        }
+        return c;
+    }
+    /**
+     * 指定された種類と設定の電卓でスクリプトを一度実行する.
+     * @param kind 電卓の種類.
+     * @param config 実行の設定.
+     * @param script スクリプト.
+     */
+    static void runOnce(String kind, String config, String script) {
+        BufferedReader br = new BufferedReader(new StringReader(script));
+        if(kind.equals("matrix")) {
+            Calculator<Matrix> c = MatrixCalc.create(br);
+            configure(c, config);
+            if(config.equals("batch")) c.preParser = new MatrixPreParser();
+            c.run(new Matrix(2,2));
+        } else {
+            Calculator<IntNum> c = kind.equals("memo") ? MemoCalc.create(br) : IntCalc.create(br);
+            configure(c, config);
+            c.run(IntNum.ZERO);
+        }
+    }
+    /**
+     * 電卓に実行の設定を反映する.
+     * @param c 電卓.
+     * @param config 実行の設定.
+     */
+    static void configure(Calculator<?> c, String config) {
+        if(!config.equals("interactive")) c.stats = null;
+        if(config.equals("batch")) c.pipelineDepth = 16;
+    }
+    /**
+     * 一つの種類と設定について, ウォームアップと計測を行い結果を1行表示する.
+     * @param kind 電卓の種類.
+     * @param config 実行の設定.
+     * @param script スクリプト.
+     * @param warmups ウォームアップの回数.
+     * @param iterations 計測の回数.
+     * @param out 結果の表示先.
+     */
+    static void measure(String kind, String config, String script, int warmups, int iterations, PrintStream out) {
+        for(int i = 0; i < warmups; i++) runOnce(kind, config, script);
+        long tid = Thread.currentThread().getId();
+        long a0 = threads.getThreadAllocatedBytes(tid);
+        long t0 = System.nanoTime();
+        for(int i = 0; i < iterations; i++) runOnce(kind, config, script);
+        long nanos = System.nanoTime() - t0;
+        long bytes = threads.getThreadAllocatedBytes(tid) - a0;
+        long lines = (long)countLines(script) * iterations;
+        out.println(String.format("%-7s %-12s %10d %14.1f %14.1f",
+                                  kind, config, lines / iterations, lines / (nanos / 1e9), (double)bytes / lines));
+    }
+    /**
+     * 生成したスクリプトで各電卓・各設定のベンチマークを実行する.
+     */
+    public static void main(String [] args) {
+        int lines = 20000;
+        int size = 16;
+        int warmups = 3;
+        int iterations = 5;
+        for(int i = 0; i + 1 < args.length; i += 2) {
+            if(args[i].equals("-lines")) lines = Integer.parseInt(args[i+1]);
+            else if(args[i].equals("-size")) size = Integer.parseInt(args[i+1]);
+            else if(args[i].equals("-wi")) warmups = Integer.parseInt(args[i+1]);
+            else if(args[i].equals("-i")) iterations = Integer.parseInt(args[i+1]);
+            else {
+                System.out.println("java CalcBench [-lines n] [-size n] [-wi n] [-i n]");
+                return;
+            }
+        }
+        Random rnd = new Random(12345);
+        String [] scripts = {
+            intScript(lines, rnd), memoScript(lines, rnd), matrixScript(lines, size, rnd), keywordScript(lines),
+        };
+        // 電卓の出力は全て捨てる（結果の表は元の標準出力へ）
+        PrintStream out = System.out;
+        PrintStream err = System.err;
+        PrintStream nul = new PrintStream(OutputStream.nullOutputStream());
+        out.println(String.format("%-7s %-12s %10s %14s %14s", "calc", "config", "lines", "lines/s", "alloc(B/line)"));
+        for(int k = 0; k < kinds.length; k++) {
+            for(String config : configs) {
+                System.setOut(nul);
+                System.setErr(nul);
+                try {
+                    measure(kinds[k], config, scripts[k], warmups, iterations, out);
+                } finally {
+                    System.setOut(out);
+                    System.setErr(err);
+                }
+            }
+        }
+    }
+}
@@ -7,8 +7,11 @@
  */
 
 import java.util.*;
+import java.util.function.*;
 import java.io.*;
 import java.math.*;
+import java.util.concurrent.*;
+import java.lang.management.*;
 
 /**
  * テキストベースの電卓クラス. 
@@ -57,6 +60,50 @@ class Calculator<Result> {
      * この電卓自身は演算を持っておらず, 外部から「コマンド」のリストを受け取ることで実行可能な演算が決まる. 
      */
     List<Command<Result>> comms;
+    /**
+     * 「結果」, プロンプト, 「コマンド」のメッセージの出力先. 
+     */
+    final PrintStream out;
+    /**
+     * 警告とエラーの出力先. 
+     */
+    final PrintStream err;
+    /**
+     * パイプライン実行時の先読みキューの長さ. 0 ならパイプライン実行をしない（既定）. <br />
+     * 正の値のときは, 入力の読み込み・「ブロック」の切り出し・トークン分割（と {@code preParser} による先読み解析）を
+     * 別スレッドで行い, 最大でこの個数の「ブロック」を先読みしておく. 
+     * 演算と入力の解析が重なって動くので, 大きな「ブロック」が続くファイル入力で効果がある. 
+     * なお, パイプライン実行時にはプロンプトは表示しない. 
+     */
+    int pipelineDepth;
+    /**
+     * パイプライン実行時に, 読み込みスレッド側で「ブロック」の中身を先に解析しておくためのオブジェクト. 
+     * {@code null} なら先読み解析はしない. 
+     */
+    BlockPreParser preParser;
+    /**
+     * 読み込みスレッドが, 1つの「ブロック」を読む間に出た警告を貯めておくリスト. 
+     * パイプライン実行でないときは {@code null} で, 警告はすぐに表示される. 
+     */
+    private List<String> pendingWarnings;
+    /**
+     * undo/redo のための「結果」の履歴. {@code null} なら履歴を取らない. 
+     * これ自身も「コマンド」なので, undo/redo を使うにはコマンドリストにも入れておくこと. 
+     */
+    History<Result> history;
+    /**
+     * 「コマンド」ごとの実行時間と割り当てメモリ量の計測. {@code null} なら計測しない. 
+     * {@code stats} コマンドで表示するには, コマンドリストにも入れておくこと. 
+     */
+    CommandStats<Result> stats;
+    /**
+     * 電卓の終了時（{@code run} から戻るとき）に実行する処理のリスト. 
+     */
+    List<Runnable> exitHooks = new ArrayList<Runnable>();
+    /**
+     * 「結果」を表示用の文字列にする方法. {@code null} なら {@code toString} をそのまま使う. 
+     */
+    ResultRenderer<Result> renderer;
     /**
      * 与えられた {@code BufferedReader} から入力を読み込み, 
      * 与えられた「コマンド」のリストにある演算を実行する電卓を作るコンストラクタ. 
@@ -64,8 +111,25 @@ class Calculator<Result> {
      * @param comms このリストにある「コマンド」を電卓の演算とする. 
      */
     Calculator(BufferedReader br, List<Command<Result>> comms) {
+        this(br, System.out, System.err, comms);
+    }
+    /**
+     * 出力先を指定して電卓を作るコンストラクタ. 
+     * コマンドリストの中で {@code OutputAware} を実装する「コマンド」にも, この出力先を渡す. 
+     * 1つの JVM で複数の電卓を動かすときは, 電卓ごとに別の出力先を渡すこと. 
+     * @param br ここから入力を行単位で読み込む. 
+     * @param out 「結果」やメッセージの出力先. 
+     * @param err 警告やエラーの出力先. 
+     * @param comms このリストにある「コマンド」を電卓の演算とする. 
+     */
+    Calculator(BufferedReader br, PrintStream out, PrintStream err, List<Command<Result>> comms) {
         this.br = br;
+        this.out = out;
+        this.err = err;
         this.comms = comms;
+        for(Command<Result> c : comms) {
+            if(c instanceof OutputAware) ((OutputAware)c).setOutput(out, err);
+        }
     }
     /**
      * 電卓のメインループ.
@@ -77,24 +141,150 @@ class Calculator<Result> {
      * @return 電卓の最終的な「結果」. 
      */
     Result run(Result res) {
-        showCurrentResult(res);   // とりあえず最初に現在の「結果」を表示
-        for(;;) {
-            List<String> block = getNextBlock();   // ユーザの入力した「ブロック」を取得
-            if(block == null) break;               // 入力が尽きたらループ終了
-            boolean run = false;                   // 「コマンド」が実行できたか？
-            String [] ts = tokenize(block.get(0)); // 1行目をトークンに分解
-            for(Command<Result> c : comms) {       // 各「コマンド」について
-                Result r = c.tryExec(ts, block, res);  // 実行を問い合わせる
-                if(r != null) {                        // null 以外の値がきた → 実行できた
-                    res = r;                           // その値を「結果」に保存し、表示
-                    showCurrentResult(res);
-                    run = true;
-                    break;
+        try {
+            if(pipelineDepth > 0) return runPipelined(res);
+            showCurrentResult(res);   // とりあえず最初に現在の「結果」を表示
+            for(;;) {
+                List<String> block = getNextBlock();   // ユーザの入力した「ブロック」を取得
+                if(block == null) break;               // 入力が尽きたらループ終了
+                String [] ts = tokenize(block.get(0)); // 1行目をトークンに分解
+                res = execBlock(ts, block, res);
+            }
+            return res;
+        } finally {
+            if(stats != null) stats.finish(); // 指定されていれば計測結果を CSV に書き出す
+            for(Runnable r : exitHooks) r.run();
+        }
+    }
+    /**
+     * ひとつの「ブロック」を, コマンドリストの各「コマンド」に順に実行を問い合わせて実行する. 
+     * 「コマンド」が「結果」を返したらそれを表示する. 
+     * {@code stats} があれば, 「コマンド」の実行と「結果」の表示の時間と割り当てメモリ量を別々に記録し, 
+     * 「ブロック」全体については JFR のイベントを出す. 
+     * @param ts 「ブロック」の1行目をトークンに分解したもの. 
+     * @param block 「ブロック」. 
+     * @param res 現在の「結果」. 
+     * @return 実行後の「結果」. どの「コマンド」も実行できなかった場合は {@code res} のまま. 
+     */
+    Result execBlock(String [] ts, List<String> block, Result res) {
+        BlockEvent ev = null;
+        String keyword = null;
+        if(stats != null) {
+            ev = new BlockEvent();
+            ev.begin();
+            keyword = CommandStats.keyword(ts);
+            ev.keyword = keyword;
+            ev.lines = block.size();
+            stats.start();
+        }
+        for(Command<Result> c : comms) {       // 各「コマンド」について
+            Result r;
+            try {
+                r = c.tryExec(ts, block, res);     // 実行を問い合わせる
+            } catch(UncheckedIOException e) {      // ファイルからの読み込みなどに失敗した → エラー表示して続行
+                if(stats != null) stats.stop(c.getClass().getSimpleName(), keyword);
+                err.println(e.getMessage());
+                if(ev != null) commit(ev, c.getClass().getSimpleName());
+                return res;
+            }
+            if(r != null) {                        // null 以外の値がきた → 実行できた
+                if(stats != null) stats.stop(c.getClass().getSimpleName(), keyword);
+                // 「結果」が変わったら, 前の「結果」を履歴に残す（undo/redo 自身による変化は除く）
+                if(history != null && c != history && r != res) history.record(res);
+                if(stats != null) stats.start();
+                showCurrentResult(r);              // その値を「結果」として表示
+                if(stats != null) stats.stop("(display)", keyword);
+                if(ev != null) commit(ev, c.getClass().getSimpleName());
+                return r;
+            }
+        }
+        // ひとつの「コマンド」も実行できなかった → エラー表示して続行
+        if(stats != null) stats.stop("(unknown)", keyword);
+        err.println("Unknown command: \"" + block.get(0) + "\"");
+        if(ev != null) commit(ev, "(unknown)");
+        return res;
+    }
+    /**
+     * 「ブロック」の JFR のイベントに, 実行した「コマンド」を入れて記録する. 
+     * @param ev イベント. 
+     * @param command 実行した「コマンド」のクラス名. どれも実行できなかったときは {@code (unknown)}. 
+     */
+    private static void commit(BlockEvent ev, String command) {
+        ev.command = command;
+        ev.commit();
+    }
+    /**
+     * 先読みキューに入れる, 読み込み済みの「ブロック」. 
+     * 入力の終わりは {@code block} が {@code null} のもので表す. 
+     */
+    private static class ReadBlock {
+        /** 「ブロック」. */
+        List<String> block;
+        /** 1行目をトークンに分解したもの. */
+        String [] ts;
+        /** この「ブロック」を読む間に出た警告. 実行スレッドが実行前に表示する. */
+        List<String> warnings;
+        /** 読み込み中に起きた例外. {@code null} でなければ, 実行スレッドがこの位置で投げ直す. */
+        Throwable error;
+    }
+    /**
+     * パイプライン実行版のメインループ. 
+     * 読み込みスレッドが「ブロック」の切り出し・トークン分割・先読み解析を行って長さ {@code pipelineDepth} のキューに入れ, 
+     * このメソッドを呼んだスレッドがキューから順に取り出して実行する. 
+     * 警告やエラーの表示, 「結果」の表示は全て実行側で行うので, 出力の順序は通常の実行と変わらない. 
+     * @param res 電卓の初期値とする「結果」. 
+     * @return 電卓の最終的な「結果」. 
+     */
+    Result runPipelined(Result res) {
+        final BlockingQueue<ReadBlock> queue = new ArrayBlockingQueue<ReadBlock>(pipelineDepth);
+        Thread reader = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    for(;;) {
+                        ReadBlock rb = new ReadBlock();
+                        synchronized(queue) { // 実行側が止まった後は, 警告の貯め先を作り直さない
+                            if(Thread.currentThread().isInterrupted()) return;
+                            rb.warnings = pendingWarnings = new ArrayList<String>();
+                        }
+                        try {
+                            rb.block = getNextBlock();
+                            if(rb.block != null) {
+                                rb.ts = tokenize(rb.block.get(0));
+                                if(preParser != null) {
+                                    PreParsedBlock pb = new PreParsedBlock(rb.block);
+                                    pb.payload = preParser.preParse(rb.ts, pb);
+                                    rb.block = pb;
+                                }
+                            }
+                        } catch(Throwable e) { // 実行側に渡して, 通常の実行と同じ位置で投げ直してもらう
+                            rb.error = e;
+                        }
+                        queue.put(rb);
+                        if(rb.block == null || rb.error != null) return;  // 入力が尽きた, または読めなくなった
+                    }
+                } catch(InterruptedException e) { // 実行側が止まったらそのまま終了
                 }
             }
-            // ひとつの「コマンド」も実行できなかった → エラー表示して続行
-            if(!run) {
-                System.err.println("Unknown command: \"" + block.get(0) + "\"");
+        }, "calculator-reader");
+        reader.setDaemon(true); // 実行側が例外で落ちても読み込みスレッドが残らないように
+        reader.start();
+        showCurrentResult(res);
+        try {
+            for(;;) {
+                ReadBlock rb = queue.take();
+                for(String w : rb.warnings) err.println(w);
+                if(rb.error instanceof RuntimeException) throw (RuntimeException)rb.error;
+                if(rb.error instanceof Error) throw (Error)rb.error;
+                if(rb.error != null) throw new RuntimeException(rb.error);
+                if(rb.block == null) break;
+                res = execBlock(rb.ts, rb.block, res);
+            }
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            synchronized(queue) {
+                reader.interrupt();
+                pendingWarnings = null; // 以降の警告はすぐに表示する
             }
         }
         return res;
@@ -116,7 +306,7 @@ class Calculator<Result> {
      * @param res 表示したい「結果」.
      */
     void showCurrentResult(Result res) {
-        System.out.println(res);
+        out.println(renderer != null ? renderer.render(res) : res);
     }
     /**
      * 入力から「ブロック」をひとつ切り出す.
@@ -140,7 +330,7 @@ class Calculator<Result> {
                     // 次の行の先頭がタブなら, リストに追加. そうでなければ読み込み終了. 
                     if(line.length() == 0 || line.charAt(0) != '\t') {
                         if(line.length() > 0) {
-                            System.err.println("Warn: ignoring extra line: " + line);
+                            warn("Warn: ignoring extra line: " + line);
                         }
                         break;
                     }
@@ -159,7 +349,20 @@ class Calculator<Result> {
      * @param str プロンプトとして表示する文字列.
      */
     void showPrompt(String str) {
-        System.out.print(str);
+        if(pipelineDepth > 0) return; // パイプライン実行時は表示しない
+        out.print(str);
+    }
+    /**
+     * 入力の読み込み中に見つかった問題を警告として表示する. 
+     * パイプライン実行時は, 「結果」の表示と順序が入れ替わらないように, 読み込んだ「ブロック」と一緒に実行側へ渡す. 
+     * @param msg 警告の文字列. 
+     */
+    void warn(String msg) {
+        if(pendingWarnings != null) {
+            pendingWarnings.add(msg);
+        } else {
+            err.println(msg);
+        }
     }
     /**
      * 入力から「ブロック」の先頭1行を読み込む. 
@@ -171,7 +374,7 @@ class Calculator<Result> {
         showPrompt(">> ");
         String line = br.readLine();
         if(line != null && line.length() > 0 && line.charAt(0) == '\t') {
-            System.err.println("Unexpected TAB is found: " + line);
+            warn("Unexpected TAB is found: " + line);
             return "";
         }
         return line;
@@ -206,6 +409,34 @@ interface Command<Result> {
     Result tryExec(final String [] ts, final List<String> block, final Result res);
 }
 
+/**
+ * メッセージを表示する「コマンド」が実装するインターフェース. 
+ * 電卓は作られるときに, コマンドリストの中でこれを実装する「コマンド」に自分の出力先を渡す. 
+ * 1つの JVM で複数の電卓を動かすときに, メッセージがそれぞれの電卓の出力先に届くようにするため. 
+ */
+interface OutputAware {
+    /**
+     * 電卓の出力先を受け取る. 
+     * @param out 「結果」やメッセージの出力先. 
+     * @param err 警告やエラーの出力先. 
+     */
+    void setOutput(PrintStream out, PrintStream err);
+}
+
+
+/**
+ * 各「コマンド」の実行後に表示する「結果」の文字列を作るもののインターフェース. 
+ * 全体の文字列を作るのが重い「結果」を, 省略して表示するために使う. 
+ * @param Result 電卓の「結果」の型. 
+ */
+interface ResultRenderer<Result> {
+    /**
+     * 「結果」を表示用の文字列にする. 
+     * @param res 「結果」. 
+     * @return 表示用の文字列. 
+     */
+    String render(Result res);
+}
 
 /**
  * 空行が入力されたときに何もしないための「コマンド」. 
@@ -223,3 +454,486 @@ class EmptyCommand<Result> implements Command<Result> {
 }
 
 
+/**
+ * 「結果」の履歴を保持し, 直前の「結果」に戻す（undo）・戻したものをやり直す（redo）「コマンド」. 
+ * <p><blockquote><pre>{@code
+ * undo
+ * }</pre></blockquote><p>
+ * ないし
+ * <p><blockquote><pre>{@code
+ * redo
+ * }</pre></blockquote><p>
+ * という 1行の「ブロック」を受け付ける. 
+ * 履歴には「結果」そのもの（参照）を保存するので, 「結果」の型は生成後に書き換えられないものであること. 
+ * そうであればコピーは不要で, 履歴のメモリは実際に作られた「結果」の分だけで済む. 
+ * 古い履歴は上限を超えたら捨てる. 
+ * @param Result 電卓の「結果」の型. 
+ */
+class History<Result> implements Command<Result>, OutputAware {
+    /**
+     * エラーの出力先. 電卓から {@code setOutput} で渡される. 
+     */
+    private PrintStream err = System.err;
+    public void setOutput(PrintStream out, PrintStream err) {
+        this.err = err;
+    }
+    /**
+     * 保持する履歴の上限. 
+     */
+    final int limit;
+    /**
+     * 履歴に置く「結果」の大きさの合計の上限（バイト）. 0 なら上限なし（件数の上限だけ）. 
+     */
+    long budget;
+    /**
+     * 履歴（undo と redo の両方）にある「結果」の大きさの合計（バイト）. 
+     */
+    long used;
+    /**
+     * 「結果」の大きさの見積もり. 予算を使わないときは {@code null}. 
+     */
+    ToLongFunction<Result> sizeOf;
+    /**
+     * undo で戻る先の「結果」. 先頭が最新. 
+     */
+    ArrayDeque<Result> undos;
+    /**
+     * redo で進む先の「結果」. 先頭が最新. 
+     */
+    ArrayDeque<Result> redos;
+    /**
+     * 履歴の上限を受け取るコンストラクタ. 
+     * @param limit 保持する履歴の上限. 
+     */
+    History(int limit) {
+        this.limit = limit;
+        undos = new ArrayDeque<Result>();
+        redos = new ArrayDeque<Result>();
+    }
+    /**
+     * 履歴に置く「結果」の大きさに予算を設定する. 
+     * 履歴は「結果」を直接持つので, 変数をディスクに追い出しても履歴にある分はヒープに残る. 
+     * その分も抑えるため, 予算を超えたら古いものから捨てる. 
+     * @param budget 予算（バイト）. 0 なら上限なし. 
+     * @param sizeOf 「結果」の大きさの見積もり. 
+     */
+    void setBudget(long budget, ToLongFunction<Result> sizeOf) {
+        this.budget = budget;
+        this.sizeOf = sizeOf;
+        used = 0;
+        for(Result r : undos) used += sizeOf.applyAsLong(r);
+        for(Result r : redos) used += sizeOf.applyAsLong(r);
+        trim();
+    }
+    /**
+     * 「結果」の大きさを返す. 予算を使わないときは 0. 
+     */
+    private long size(Result r) {
+        return sizeOf == null ? 0 : sizeOf.applyAsLong(r);
+    }
+    /**
+     * 件数か大きさが上限を超えている間, 最も古い undo から捨て, それでも予算を超えるなら最も先の redo から捨てる. 
+     */
+    private void trim() {
+        while(!undos.isEmpty() && (undos.size() > limit || budget > 0 && used > budget)) {
+            used -= size(undos.removeLast());
+        }
+        while(!redos.isEmpty() && budget > 0 && used > budget) {
+            used -= size(redos.removeLast());
+        }
+    }
+    /**
+     * 「結果」が新しく変わったときに, 変わる前の「結果」を記録する. 
+     * 新しい変化があったので, redo できるものは捨てる. 
+     * @param prev 変わる前の「結果」. 
+     */
+    void record(Result prev) {
+        undos.addFirst(prev);
+        used += size(prev);
+        for(Result r : redos) used -= size(r);
+        redos.clear();
+        trim(); // 古いものから捨てる
+    }
+    /**
+     * undo/redo を実行する. 
+     * 戻る（進む）先がないときは, その旨を表示して現在の「結果」をそのまま返す. 
+     */
+    public Result tryExec(final String [] ts, final List<String> block, final Result res) {
+        if(block.size() != 1) return null;
+        if(ts.length != 1) return null;
+        if("undo".equals(ts[0])) {
+            if(undos.isEmpty()) {
+                err.println("Nothing to undo");
+                return res;
+            }
+            redos.addFirst(res);
+            used += size(res);
+            Result r = undos.removeFirst();
+            used -= size(r);
+            trim();
+            return r;
+        }
+        if("redo".equals(ts[0])) {
+            if(redos.isEmpty()) {
+                err.println("Nothing to redo");
+                return res;
+            }
+            undos.addFirst(res);
+            used += size(res);
+            Result r = redos.removeFirst();
+            used -= size(r);
+            trim();
+            return r;
+        }
+        return null;
+    }
+}
+
+/**
+ * 「コマンド」ごとの実行回数・実行時間・割り当てメモリ量を集計するクラス. 
+ * 集計は「コマンド」のクラス名と「ブロック」の最初のトークン（キーワード）の組ごとに行い, 
+ * 実行時間は分位点（p50/p99）と最大値が分かるようにヒストグラムで持つ. 
+ * 「結果」の表示にかかった分は {@code (display)}, どの「コマンド」も実行できなかった「ブロック」は {@code (unknown)} として集計する. <br />
+ * これ自身が, 集計結果を表として表示する「コマンド」にもなっている. 
+ * <p><blockquote><pre>{@code
+ * stats
+ * }</pre></blockquote><p>
+ * という1トークンからなる1行「ブロック」を受け付ける. 
+ * また, {@code csvFile} を指定しておくと, 電卓の終了時に集計結果を CSV で書き出す. 
+ * ひとつの電卓（スレッド）から使うこと. 
+ * @param Result 電卓の「結果」の型. 
+ */
+class CommandStats<Result> implements Command<Result>, OutputAware {
+    /**
+     * メッセージの出力先. 電卓から {@code setOutput} で渡される. 
+     */
+    private PrintStream out = System.out, err = System.err;
+    public void setOutput(PrintStream out, PrintStream err) {
+        this.out = out;
+        this.err = err;
+    }
+    /**
+     * 一組の（クラス名, キーワード）についての集計. 
+     */
+    static class Entry {
+        /** 「コマンド」のクラス名. */
+        final String command;
+        /** キーワード. */
+        final String keyword;
+        /** 実行回数. */
+        long count;
+        /** 実行時間の合計（ナノ秒）. */
+        long totalNanos;
+        /** 実行時間の最大（ナノ秒）. */
+        long maxNanos;
+        /** 割り当てメモリ量の合計（バイト）. */
+        long allocBytes;
+        /**
+         * 実行時間のヒストグラム. 
+         * 2 のべきごとの区間をさらに 8 等分した区間ごとに数えるので, 分位点の誤差は 1/8 程度. 
+         */
+        final long [] buckets = new long[64 * 8];
+        Entry(String command, String keyword) {
+            this.command = command;
+            this.keyword = keyword;
+        }
+        /**
+         * 実行時間 {@code nanos} がヒストグラムのどの区間に入るかを返す. 
+         * @param nanos 実行時間（ナノ秒）. 
+         * @return 区間の番号. 
+         */
+        static int bucket(long nanos) {
+            if(nanos < 8) return (int)Math.max(nanos, 0);
+            int e = 63 - Long.numberOfLeadingZeros(nanos); // 2^e <= nanos < 2^(e+1)
+            return (e - 2) * 8 + (int)((nanos >>> (e - 3)) & 7);
+        }
+        /**
+         * ヒストグラムの区間の上端を返す. 
+         * @param b 区間の番号. 
+         * @return 区間に入る実行時間の最大値（ナノ秒）. 
+         */
+        static long upper(int b) {
+            if(b < 8) return b;
+            int e = b / 8 + 2;
+            return ((8L + b % 8) << (e - 3)) + (1L << (e - 3)) - 1;
+        }
+        /**
+         * 1回分の計測を加える. 
+         * @param nanos 実行時間（ナノ秒）. 
+         * @param bytes 割り当てメモリ量（バイト）. 
+         */
+        void add(long nanos, long bytes) {
+            count++;
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+            allocBytes += bytes;
+            buckets[bucket(nanos)]++;
+        }
+        /**
+         * 実行時間の分位点を返す. 
+         * @param q 分位（0 より大きく 1 以下）. 
+         * @return 分位点（ナノ秒）. 
+         */
+        long percentile(double q) {
+            long rank = (long)Math.ceil(q * count);
+            long seen = 0;
+            for(int b = 0; b < buckets.length; b++) {
+                seen += buckets[b];
+                if(seen >= rank) return Math.min(upper(b), maxNanos);
+            }
+            return maxNanos;
+        }
+    }
+    /**
+     * 集計. キーは「クラス名 キーワード」. 
+     */
+    LinkedHashMap<String, Entry> entries;
+    /**
+     * 終了時に集計結果を書き出す CSV ファイル. {@code null} なら書き出さない. 
+     */
+    String csvFile;
+    /**
+     * スレッドごとの割り当てメモリ量を取得するためのオブジェクト. 取得できない JVM では {@code null}. 
+     */
+    private final com.sun.management.ThreadMXBean threads;
+    /**
+     * 計測開始時の時刻. 
+     */
+    private long t0;
+    /**
+     * 計測開始時の割り当てメモリ量. 
+     */
+    private long a0;
+    /**
+     * 空の集計を作るコンストラクタ. 
+     */
+    CommandStats() {
+        entries = new LinkedHashMap<String, Entry>();
+        ThreadMXBean tb = ManagementFactory.getThreadMXBean();
+        if(tb instanceof com.sun.management.ThreadMXBean
+           && ((com.sun.management.ThreadMXBean)tb).isThreadAllocatedMemorySupported()) {
+            threads = (com.sun.management.ThreadMXBean)tb;
+            threads.setThreadAllocatedMemoryEnabled(true);
+        } else {
+            threads = null;
+        }
+    }
+    /**
+     * 集計に使うキーワードを「ブロック」の最初のトークンから決める. 
+     * 数値をそのままキーにすると際限なく増えるので, 数値は {@code (number)} にまとめる. 
+     * @param ts 「ブロック」の最初の行をトークンに分解して並べた配列. 
+     * @return キーワード. 
+     */
+    static String keyword(String [] ts) {
+        String t = ts.length > 0 ? ts[0] : "";
+        if(t.length() == 0) return "(empty)";
+        if(Character.isDigit(t.charAt(0))) return "(number)";
+        return t;
+    }
+    /**
+     * 現在のスレッドがこれまでに割り当てたメモリ量を返す. 
+     * @return 割り当てメモリ量（バイト）. 取得できない JVM では 0. 
+     */
+    private long allocated() {
+        return threads != null ? threads.getThreadAllocatedBytes(Thread.currentThread().getId()) : 0;
+    }
+    /**
+     * 計測を開始する. 
+     */
+    void start() {
+        a0 = allocated();
+        t0 = System.nanoTime();
+    }
+    /**
+     * {@code start} からの実行時間と割り当てメモリ量を集計に加える. 
+     * @param command 「コマンド」のクラス名. 
+     * @param keyword キーワード. 
+     */
+    void stop(String command, String keyword) {
+        long nanos = System.nanoTime() - t0;
+        long bytes = allocated() - a0;
+        String key = command + " " + keyword;
+        Entry e = entries.get(key);
+        if(e == null) {
+            e = new Entry(command, keyword);
+            entries.put(key, e);
+        }
+        e.add(nanos, bytes);
+    }
+    /**
+     * 集計結果を表として表示する. 
+     */
+    public Result tryExec(final String [] ts, final List<String> block, final Result res) {
+        if(block.size() != 1) return null;
+        if(ts.length == 1 && "stats".equals(ts[0])) {
+            out.println(String.format("%-20s %-10s %8s %10s %10s %10s %12s",
+                                             "command", "keyword", "count", "p50(us)", "p99(us)", "max(us)", "alloc(B)/op"));
+            for(Entry e : entries.values()) {
+                out.println(String.format("%-20s %-10s %8d %10.1f %10.1f %10.1f %12d",
+                                                 e.command, e.keyword, e.count,
+                                                 e.percentile(0.5) / 1e3, e.percentile(0.99) / 1e3, e.maxNanos / 1e3,
+                                                 e.allocBytes / e.count));
+            }
+            return res;
+        }
+        return null;
+    }
+    /**
+     * 電卓の終了時に呼ばれ, {@code csvFile} が指定されていれば集計結果を CSV で書き出す. 
+     */
+    void finish() {
+        if(csvFile == null) return;
+        try {
+            PrintWriter pw = new PrintWriter(new FileWriter(csvFile));
+            pw.println("command,keyword,count,total_ns,p50_ns,p99_ns,max_ns,alloc_bytes");
+            for(Entry e : entries.values()) {
+                pw.println(e.command + "," + e.keyword + "," + e.count + "," + e.totalNanos + ","
+                           + e.percentile(0.5) + "," + e.percentile(0.99) + "," + e.maxNanos + "," + e.allocBytes);
+            }
+            pw.close();
+        } catch(IOException e) {
+            err.println("cannot write stats: " + e);
+        }
+    }
+}
+
+/**
+ * 実行した「ブロック」ごとに出す JFR（JDK Flight Recorder）のイベント. 
+ * {@code java -XX:StartFlightRecording=filename=calc.jfr MatrixCalc} のように記録を有効にして実行すると記録される. 
+ */
+@jdk.jfr.Name("calculator.Block")
+@jdk.jfr.Label("Calculator Block")
+@jdk.jfr.Category("Calculator")
+class BlockEvent extends jdk.jfr.Event {
+    /** 実行した「コマンド」のクラス名. */
+    @jdk.jfr.Label("Command")
+    String command;
+    /** 「ブロック」の最初のトークン. */
+    @jdk.jfr.Label("Keyword")
+    String keyword;
+    /** 「ブロック」の行数. */
+    @jdk.jfr.Label("Lines")
+    int lines;
+}
+
+/**
+ * パイプライン実行時に, 読み込みスレッド側で「ブロック」の中身を先に解析しておくためのインターフェース. 
+ * 解析結果は {@code PreParsedBlock} に付けて「コマンド」に渡されるので, 
+ * 「コマンド」側はそれがあれば解析を省略できる. 
+ */
+interface BlockPreParser {
+    /**
+     * 「ブロック」を先に解析する. 
+     * 読み込みスレッドで呼ばれるので, 電卓の「結果」や変数には触れないこと. 
+     * @param ts 「ブロック」の最初の行をトークンに分解して並べた配列. 
+     * @param block 「ブロック」全体
+     * @return 解析結果. 解析の対象でなければ {@code null}. 
+     */
+    Object preParse(final String [] ts, final List<String> block);
+}
+
+/**
+ * 先読み解析の結果を付けた「ブロック」. 
+ * 中身は普通の「ブロック」と同じ行のリストなので, 解析結果を使わない「コマンド」はそのまま扱える. 
+ */
+class PreParsedBlock extends ArrayList<String> {
+    private static final long serialVersionUID = 1L;
+    /**
+     * 先読み解析の結果. なければ {@code null}. 
+     */
+    Object payload;
+    /**
+     * 与えられた「ブロック」の行をコピーして作るコンストラクタ. 
+     * @param block 元の「ブロック」. 
+     */
+    PreParsedBlock(List<String> block) {
+        super(block);
+    }
+}
+
+/**
+ * トークンが数として解釈できるかを, 例外を使わずに調べるためのメソッドをまとめたクラス. 
+ * 「コマンド」は自分宛てでない「ブロック」にも試されるので, 
+ * 変換の失敗（例外の生成とスタックトレースの記録）を判定に使うと, それだけで実行時間の大半を占めることがある. 
+ * ここで先に調べておき, 変換に失敗しないものだけを変換する. 
+ */
+class Tokens {
+    /**
+     * {@code new BigInteger(s)} で変換できるかを返す. 
+     * 符号（+ か -）に続けて 1文字以上の10進数の数字（ASCII 以外の数字も含む）が並ぶもの. 
+     * @param s トークン. 
+     * @return 変換できるなら {@code true}. 
+     */
+    static boolean isInteger(String s) {
+        int n = s.length();
+        int i = n > 0 && (s.charAt(0) == '-' || s.charAt(0) == '+') ? 1 : 0;
+        if(i == n) return false;
+        for(; i < n; i++) {
+            if(Character.digit(s.charAt(i), 10) < 0) return false;
+        }
+        return true;
+    }
+    /**
+     * {@code Integer.parseInt(s)} で変換できるかを返す. 
+     * {@code isInteger} の条件に加えて, int の範囲に収まること. 
+     * @param s トークン. 
+     * @return 変換できるなら {@code true}. 
+     */
+    static boolean isInt(String s) {
+        if(!isInteger(s)) return false;
+        boolean neg = s.charAt(0) == '-';
+        int i = neg || s.charAt(0) == '+' ? 1 : 0;
+        while(i < s.length() - 1 && Character.digit(s.charAt(i), 10) == 0) i++; // 先頭の 0 は飛ばす
+        if(s.length() - i > 10) return false;
+        long v = 0;
+        for(; i < s.length(); i++) v = v * 10 + Character.digit(s.charAt(i), 10);
+        return neg ? -v >= Integer.MIN_VALUE : v <= Integer.MAX_VALUE;
+    }
+    /**
+     * {@code Double.parseDouble(s)} で変換できるかを返す. 
+     * 前後に空白のないトークンについて, 符号付きの NaN, Infinity, 10進数（小数点・指数部・型接尾辞 f, d を含む）と
+     * 16進数（{@code 0x1.8p1} の形）を受け付ける. 
+     * @param s トークン. 
+     * @return 変換できるなら {@code true}. 
+     */
+    static boolean isDouble(String s) {
+        int n = s.length();
+        int i = n > 0 && (s.charAt(0) == '-' || s.charAt(0) == '+') ? 1 : 0;
+        if(s.startsWith("NaN", i) || s.startsWith("Infinity", i)) {
+            return n - i == (s.charAt(i) == 'N' ? 3 : 8);
+        }
+        if(n > 0 && "fFdD".indexOf(s.charAt(n - 1)) >= 0) n--; // 型接尾辞
+        boolean hex = n - i > 2 && s.charAt(i) == '0' && (s.charAt(i + 1) == 'x' || s.charAt(i + 1) == 'X');
+        if(hex) i += 2;
+        int radix = hex ? 16 : 10;
+        // 仮数部
+        int digits = 0;
+        while(i < n && isDigit(s.charAt(i), radix)) { i++; digits++; }
+        if(i < n && s.charAt(i) == '.') {
+            i++;
+            while(i < n && isDigit(s.charAt(i), radix)) { i++; digits++; }
+        }
+        if(digits == 0) return false;
+        // 指数部. 16進数では必須
+        if(i < n && (hex ? s.charAt(i) == 'p' || s.charAt(i) == 'P' : s.charAt(i) == 'e' || s.charAt(i) == 'E')) {
+            i++;
+            if(i < n && (s.charAt(i) == '-' || s.charAt(i) == '+')) i++;
+            int exp = 0;
+            while(i < n && isDigit(s.charAt(i), 10)) { i++; exp++; }
+            if(exp == 0) return false;
+        } else if(hex) {
+            return false;
+        }
+        return i == n;
+    }
+    /**
+     * ASCII の数字かを返す. 
+     * @param c 文字. 
+     * @param radix 10 か 16. 
+     * @return 数字なら {@code true}. 
+     */
+    private static boolean isDigit(char c, int radix) {
+        if(c >= '0' && c <= '9') return true;
+        return radix == 16 && (c >= 'a' && c <= 'f' || c >= 'A' && c <= 'F');
+    }
+}
@@ -1,5 +1,6 @@
 /*
- * 「結果」が整数（BigInteger）である電卓. 四則演算程度をもつ. 
+ * 「結果」が整数（IntNum）である電卓. 四則演算程度をもつ. 
+ * 値は通常 long で持ち, long に収まらなくなったときだけ BigInteger に切り替える. 
  * コンパイル & 実行：
  * javac Calculator.java IntCalc.java
  * java IntCalc
@@ -9,22 +10,164 @@ import java.util.*;
 import java.io.*;
 import java.math.*;
 
+/**
+ * 整数電卓の「結果」. 書き換えられない整数. 
+ * 値が long に収まる間は long のまま持ち, 演算が溢れたとき（{@code Math.*Exact} が例外を投げたとき）だけ BigInteger に切り替える. 
+ * BigInteger の演算結果が long に収まれば再び long に戻す. 
+ * 全ての演算・例外・文字列表現は, BigInteger だけで計算した場合と同じになる. 
+ */
+final class IntNum {
+    /**
+     * 0. 
+     */
+    static final IntNum ZERO = new IntNum(0, null);
+    /**
+     * long に収まらない場合の値. 収まる場合は {@code null}. 
+     */
+    private final BigInteger big;
+    /**
+     * long に収まる場合の値. 
+     */
+    private final long small;
+    /**
+     * long に収まらない場合の 10進数表記. 最初に {@code toString} したときに作って覚えておく. 
+     */
+    private String decimal;
+    private IntNum(long small, BigInteger big) {
+        this.small = small;
+        this.big = big;
+    }
+    /**
+     * long の値から作る. 
+     * @param v 値. 
+     * @return 作った整数. 
+     */
+    static IntNum of(long v) {
+        return v == 0 ? ZERO : new IntNum(v, null);
+    }
+    /**
+     * BigInteger の値から作る. long に収まれば long で持つ. 
+     * @param v 値. 
+     * @return 作った整数. 
+     */
+    static IntNum of(BigInteger v) {
+        return v.bitLength() < 64 ? of(v.longValue()) : new IntNum(0, v);
+    }
+    /**
+     * 10進数の文字列を整数にする. {@code new BigInteger(s)} と同じものを受け付け, 同じ例外を投げる. 
+     * 符号と18桁以下の ASCII の数字だけからなる場合は BigInteger を作らずに変換する. 
+     * @param s 10進数の文字列. 
+     * @return 変換した整数. 
+     */
+    static IntNum parse(String s) {
+        int n = s.length();
+        int i = n > 0 && (s.charAt(0) == '-' || s.charAt(0) == '+') ? 1 : 0;
+        if(i < n && n - i <= 18) { // 18桁までは long で溢れない
+            long v = 0;
+            for(int k = i; k < n; k++) {
+                char c = s.charAt(k);
+                if(c < '0' || c > '9') return of(new BigInteger(s)); // 例外も含めて BigInteger に任せる
+                v = v * 10 + (c - '0');
+            }
+            return of(s.charAt(0) == '-' ? -v : v);
+        }
+        return of(new BigInteger(s));
+    }
+    /**
+     * BigInteger での値を返す. 
+     * @return BigInteger での値. 
+     */
+    BigInteger toBigInteger() {
+        return big != null ? big : BigInteger.valueOf(small);
+    }
+    /**
+     * 符号ビットを除いた2の補数表現のビット数を返す. {@code BigInteger.bitLength} と同じ. 
+     * @return ビット数. 
+     */
+    int bitLength() {
+        return big != null ? big.bitLength() : 64 - Long.numberOfLeadingZeros(small < 0 ? ~small : small);
+    }
+    IntNum add(IntNum v) {
+        if(big == null && v.big == null) {
+            try {
+                return of(Math.addExact(small, v.small));
+            } catch(ArithmeticException e) { // 溢れたら BigInteger で計算し直す
+            }
+        }
+        return of(toBigInteger().add(v.toBigInteger()));
+    }
+    IntNum subtract(IntNum v) {
+        if(big == null && v.big == null) {
+            try {
+                return of(Math.subtractExact(small, v.small));
+            } catch(ArithmeticException e) {
+            }
+        }
+        return of(toBigInteger().subtract(v.toBigInteger()));
+    }
+    IntNum multiply(IntNum v) {
+        if(big == null && v.big == null) {
+            try {
+                return of(Math.multiplyExact(small, v.small));
+            } catch(ArithmeticException e) {
+            }
+        }
+        return of(toBigInteger().multiply(v.toBigInteger()));
+    }
+    /**
+     * 0 方向に切り捨てた商を返す. 0 で割ったときは BigInteger と同じ例外を投げる. 
+     */
+    IntNum divide(IntNum v) {
+        // 0 除算と, 唯一溢れる Long.MIN_VALUE / -1 は BigInteger に任せる
+        if(big == null && v.big == null && v.small != 0 && !(small == Long.MIN_VALUE && v.small == -1)) {
+            return of(small / v.small);
+        }
+        return of(toBigInteger().divide(v.toBigInteger()));
+    }
+    IntNum negate() {
+        if(big == null && small != Long.MIN_VALUE) return of(-small);
+        return of(toBigInteger().negate());
+    }
+    public boolean equals(Object o) {
+        if(!(o instanceof IntNum)) return false;
+        IntNum v = (IntNum)o;
+        return big == null ? v.big == null && small == v.small : big.equals(v.big);
+    }
+    public int hashCode() {
+        return big != null ? big.hashCode() : Long.hashCode(small);
+    }
+    /**
+     * 10進数表記を返す. long に収まらない値は変換に時間がかかるので, 一度作ったものを覚えておく. 
+     */
+    public String toString() {
+        if(big == null) return Long.toString(small);
+        if(decimal == null) decimal = big.toString();
+        return decimal;
+    }
+    /**
+     * 10進数表記が既に作られていればそれを返す. 
+     * @return 10進数表記. まだ作られていなければ {@code null}. 
+     */
+    String cachedString() {
+        return big == null ? Long.toString(small) : decimal;
+    }
+}
+
 /**
  * 新たな整数値を入力するための「コマンド」. 
  * 10進数の値のみを書いた「ブロック」を受け付けて, その値を「結果」として返す. 
  */
-class IntValue implements Command<BigInteger> {
+class IntValue implements Command<IntNum> {
     /**
      * 「ブロック」が 1行のみで, かつ, その行が 10進数ひとつのみからなる場合に, その10進数の値を「結果」として返す. 
      */
-    public BigInteger tryExec(final String [] ts, final List<String> block, final BigInteger res) {
+    public IntNum tryExec(final String [] ts, final List<String> block, final IntNum res) {
         if(block.size() != 1) return null;
         if(ts.length != 1) return null;
-        try {
-            return new BigInteger(ts[0]); // とりあえず BigInteger に変換させる. 失敗したら例外が飛ぶ. 
-        } catch(Exception e) {  // 変換失敗時の例外を受け取り, null を返す（＝ この「コマンド」は実行できない）
-            return null;
-        }
+        // 10進数でなければ null を返す（＝ この「コマンド」は実行できない）. 
+        // neg などのキーワードの行にも毎回試されるので, 変換の失敗の例外で判定はしない
+        if(!Tokens.isInteger(ts[0])) return null;
+        return IntNum.parse(ts[0]);
     }
 }
 
@@ -35,16 +178,16 @@ class IntValue implements Command<BigInteger> {
  * }</pre></blockquote><p>
  * という 1行の「ブロック」を受け付けて, その値 {@code n} を現在の「結果」に足した「結果」を返す. 
  */
-class IntAdd implements Command<BigInteger> {
+class IntAdd implements Command<IntNum> {
     /**
      * 「ブロック」が 1行のみで, かつ, その行が "+" と10進数ひとつのみからなる場合に, 
      * その10進数の値を与えられた「結果」に足した「結果」を返す. 
      * 面倒なので 10進数以外が来ないことを期待した手抜き実装. 真面目にやるなら例外をキャッチして null を返す. 
      */
-    public BigInteger tryExec(final String [] ts, final List<String> block, final BigInteger res) {
+    public IntNum tryExec(final String [] ts, final List<String> block, final IntNum res) {
         if(block.size() != 1) return null;
         if(ts.length == 2 && "+".equals(ts[0])) {
-            BigInteger v = new BigInteger(ts[1]);
+            IntNum v = IntNum.parse(ts[1]);
             return res.add(v);
         } else {
             return null;
@@ -59,11 +202,11 @@ class IntAdd implements Command<BigInteger> {
  * }</pre></blockquote><p>
  * という 1行の「ブロック」を受け付けて, その値 {@code n} を現在の「結果」から引いた「結果」を返す. 
  */
-class IntSub implements Command<BigInteger> {
-    public BigInteger tryExec(final String [] ts, final List<String> block, final BigInteger res) {
+class IntSub implements Command<IntNum> {
+    public IntNum tryExec(final String [] ts, final List<String> block, final IntNum res) {
         if(block.size() != 1) return null;
         if(ts.length == 2 && "-".equals(ts[0])) {
-            BigInteger v = new BigInteger(ts[1]);
+            IntNum v = IntNum.parse(ts[1]);
             return res.subtract(v);
         } else {
             return null;
@@ -85,16 +228,16 @@ class IntSub implements Command<BigInteger> {
  * ないし, その値{@code n} で現在の「結果」を割った「結果」をそれぞれ返す. 
  * ひとつオブジェクトで複数の演算に対応するための例. 
  */
-class IntMulDiv implements Command<BigInteger> {
-    public BigInteger tryExec(final String [] ts, final List<String> block, final BigInteger res) {
+class IntMulDiv implements Command<IntNum> {
+    public IntNum tryExec(final String [] ts, final List<String> block, final IntNum res) {
         if(block.size() != 1) return null;
         if(ts.length != 2) return null;
 
         // ひとつめのトークンが"*" なら掛け算をして返す
-        if("*".equals(ts[0])) return res.multiply(new BigInteger(ts[1])); 
+        if("*".equals(ts[0])) return res.multiply(IntNum.parse(ts[1])); 
 
         // ひとつめのトークンが"/" なら割り算をして返す
-        if("/".equals(ts[0])) return res.divide(new BigInteger(ts[1]));
+        if("/".equals(ts[0])) return res.divide(IntNum.parse(ts[1]));
 
         // それ以外は実行できないので null を返す
         return null;
@@ -109,8 +252,8 @@ class IntMulDiv implements Command<BigInteger> {
  * という 1行の「ブロック」を受け付けて, 現在の「結果」を符号反転した「結果」を返す. 
  * 単項演算（例えば他に sqrt とか）の例. 
  */
-class IntNeg implements Command<BigInteger> {
-    public BigInteger tryExec(final String [] ts, final List<String> block, final BigInteger res) {
+class IntNeg implements Command<IntNum> {
+    public IntNum tryExec(final String [] ts, final List<String> block, final IntNum res) {
         if(block.size() != 1) return null;
         if(ts.length != 1) return null;
         if("neg".equals(ts[0])) return res.negate();
@@ -118,6 +261,123 @@ class IntNeg implements Command<BigInteger> {
     }
 }
 
+/**
+ * 全桁を表示する「コマンド」. 
+ * <p><blockquote><pre>{@code
+ * print
+ * }</pre></blockquote><p>
+ * という 1行の「ブロック」を受け付けて, 現在の「結果」を（省略せずに）全桁表示する. 「結果」は変えない. 
+ * 表示は「コマンド」の実行後の「結果」の表示で行うので, 全桁が表示されるのは一度だけ. 
+ */
+class IntPrint implements Command<IntNum> {
+    /**
+     * 電卓が「結果」の表示に使うもの. {@code null} なら「結果」は元々省略されない. 
+     */
+    private final IntNumRenderer renderer;
+    /**
+     * 電卓が「結果」の表示に使うものを受け取るコンストラクタ. 
+     * @param renderer 電卓の {@code renderer}. 省略して表示しない電卓なら {@code null}. 
+     */
+    IntPrint(IntNumRenderer renderer) {
+        this.renderer = renderer;
+    }
+    public IntNum tryExec(final String [] ts, final List<String> block, final IntNum res) {
+        if(block.size() != 1) return null;
+        if(ts.length != 1) return null;
+        if(!"print".equals(ts[0])) return null;
+        if(renderer != null) renderer.showFullOnce(res); // この直後の表示だけ省略しない
+        return res;
+    }
+}
+
+/**
+ * 桁数の多い整数を省略して表示するためのもの. 
+ * {@code maxDigits} 桁を超える値は, 全桁の 10進数表記を作らずに, 先頭と末尾の {@code EDGE} 桁ずつと桁数を
+ * <p><blockquote><pre>{@code
+ * 1234567890...0987654321 (1000001 digits)
+ * }</pre></blockquote><p>
+ * のように表示する. BigInteger の 10進数への変換は桁数に対して線形より重いので, 
+ * 大きな値の掛け算を続けるとそれを毎回表示するだけで時間の大半を使ってしまう. 
+ * 全桁は {@code print} コマンドで表示できる（一度作った表記は {@code IntNum} が覚えておく）. <br />
+ * 末尾の桁は 10^EDGE での剰余で, 先頭の桁と桁数は常用対数の見積もりで求める. 
+ * 見積もりが桁の境目に近すぎて決めきれないときだけ, 10のべき乗で割って正確に求める. 
+ */
+class IntNumRenderer implements ResultRenderer<IntNum> {
+    /**
+     * 先頭と末尾に表示する桁数. 
+     */
+    static final int EDGE = 10;
+    /**
+     * log10(2). 大きな値の常用対数を誤差なく見積もるために BigDecimal で持つ. 
+     */
+    static final BigDecimal LOG10_2 = new BigDecimal("0.30102999566398119521373889472449302676818988146211");
+    /**
+     * 10^EDGE. 
+     */
+    static final BigInteger TEN_EDGE = BigInteger.TEN.pow(EDGE);
+    /**
+     * 全桁を表示する最大の桁数. 
+     */
+    final int maxDigits;
+    /**
+     * 次の表示で省略せずに全桁を表示する「結果」. なければ {@code null}. 
+     */
+    private IntNum full;
+    /**
+     * 全桁を表示する最大の桁数を受け取るコンストラクタ. 
+     * @param maxDigits 全桁を表示する最大の桁数（{@code EDGE} の2倍以上）. 
+     */
+    IntNumRenderer(int maxDigits) {
+        this.maxDigits = Math.max(maxDigits, 2 * EDGE);
+    }
+    /**
+     * 次の表示が {@code res} なら, 桁数によらず全桁を表示するようにする（{@code print} コマンド用）. 
+     * @param res 全桁を表示する「結果」. 
+     */
+    void showFullOnce(IntNum res) {
+        full = res;
+    }
+    public String render(IntNum res) {
+        boolean showFull = res == full;
+        full = null;
+        if(showFull) return res.toString();
+        String s = res.cachedString();
+        if(s != null && s.length() <= maxDigits + 1) return s; // 既に全桁があればそれを使う
+        if(res.bitLength() * 0.30103 < maxDigits - 1) return res.toString(); // 確実に maxDigits 桁以下
+        BigInteger a = res.toBigInteger().abs();
+        // log10(a) ≒ log10(上位 63 ビット) + shift * log10(2)
+        int shift = a.bitLength() - 63;
+        BigDecimal sl = LOG10_2.multiply(BigDecimal.valueOf(shift));
+        BigInteger ip = sl.toBigInteger();
+        double lg = sl.subtract(new BigDecimal(ip)).doubleValue() + Math.log10((double)a.shiftRight(shift).longValue());
+        long exp = ip.longValue() + (long)Math.floor(lg);
+        double frac = lg - Math.floor(lg);
+        double lead = Math.pow(10, frac + EDGE - 1);
+        long digits = exp + 1;
+        long head = (long)lead;
+        if(lead - head < 1e-3 || head + 1 - lead < 1e-3 || frac < 1e-9 || frac > 1 - 1e-9) {
+            // 境目に近いので, 先頭の桁と桁数を割り算で正確に求める
+            BigInteger q = a.divide(BigInteger.TEN.pow((int)(digits - EDGE)));
+            if(q.compareTo(TEN_EDGE) >= 0) {
+                q = q.divide(BigInteger.TEN);
+                digits++;
+            } else if(q.compareTo(TEN_EDGE.divide(BigInteger.TEN)) < 0) {
+                digits--;
+                q = a.divide(BigInteger.TEN.pow((int)(digits - EDGE)));
+            }
+            head = q.longValue();
+        }
+        if(digits <= maxDigits) return res.toString(); // 見積もりの結果, 省略しなくてよかった
+        String tail = a.mod(TEN_EDGE).toString();
+        StringBuilder sb = new StringBuilder();
+        if(res.toBigInteger().signum() < 0) sb.append('-');
+        sb.append(head).append("...");
+        for(int i = tail.length(); i < EDGE; i++) sb.append('0');
+        sb.append(tail).append(" (").append(digits).append(" digits)");
+        return sb.toString();
+    }
+}
+
 /**
  * 四則演算と符号反転をもった整数電卓を作成し動作させるクラス. 
  * {@code main} メソッドで「コマンド」のリストを作り, 
@@ -144,19 +404,32 @@ class IntCalc {
      * 電卓を作って実行する. 
      */
     public static void main(String [] args) throws Exception {
+        // 標準入力から読み込む BufferedReader を作る
+        BufferedReader br = new BufferedReader(new InputStreamReader(System.in));
+        // 新たな電卓のインスタンスを生成
+        Calculator<IntNum> c = create(br);
+        // 電卓の実行
+        c.run(IntNum.ZERO);
+    }
+    /**
+     * 四則演算と符号反転の「コマンド」のリストを作り, 与えられた入力から読み込む電卓を生成する. 
+     * @param br 電卓の入力. 
+     * @return 生成した電卓. 
+     */
+    static Calculator<IntNum> create(BufferedReader br) {
         // 定義した様々な「コマンド」からなるリストを作る
-        ArrayList<Command<BigInteger>> comms = new ArrayList<Command<BigInteger>>();
-        comms.add(new EmptyCommand<BigInteger>());
+        ArrayList<Command<IntNum>> comms = new ArrayList<Command<IntNum>>();
+        comms.add(new EmptyCommand<IntNum>());
         comms.add(new IntValue());
         comms.add(new IntAdd());
         comms.add(new IntSub());
         comms.add(new IntMulDiv());
         comms.add(new IntNeg());
-        // 標準入力から読み込む BufferedReader を作る
-        BufferedReader br = new BufferedReader(new InputStreamReader(System.in));
-        // 以上の二つを与えて, 新たな電卓のインスタンスを生成
-        Calculator<BigInteger> c = new Calculator<BigInteger>(br, comms);
-        // 電卓の実行
-        c.run(BigInteger.ZERO);
+        IntNumRenderer renderer = new IntNumRenderer(1000); // 1000桁を超える値は省略して表示
+        comms.add(new IntPrint(renderer));
+        // 入力とリストの二つを与えて, 新たな電卓のインスタンスを生成
+        Calculator<IntNum> c = new Calculator<IntNum>(br, comms);
+        c.renderer = renderer;
+        return c;
     }
 }
\ No newline at end of file
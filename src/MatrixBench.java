@@ -0,0 +1,259 @@
+/*
+ * Matrix の各演算（add, mul, inv, div, trans, read, toString）のベンチマーク.
+ * サイズ・形（正方行列, 縦長行列）・非ゼロ要素の密度を変えながら,
+ * 1秒あたりの実行回数（ops/s）と 1回あたりの割り当てメモリ量（B/op）, GC の回数を測る.
+ * コンパイル & 実行：
+ * javac Calculator.java IntCalc.java MemoCalc.java MatrixCalc.java MatrixBench.java
+ * java MatrixBench
+ * java MatrixBench -sizes 8,64,256,1024,4096 -ops mul,inv -time 2000
+ */
+
+import java.util.*;
+import java.lang.management.*;
+
+/**
+ * 計測対象の演算.
+ * 入力の行列は計測前に {@code setup} で用意し, {@code run} の実行だけを計測する.
+ */
+abstract class MatrixBenchOp {
+    /**
+     * 演算の名前.
+     */
+    final String name;
+    /**
+     * 正方行列でなくても計測できるか.
+     */
+    final boolean anyShape;
+    /**
+     * 名前を受け取るコンストラクタ.
+     * @param name 演算の名前.
+     * @param anyShape 正方行列でなくても計測できるなら {@code true}.
+     */
+    MatrixBenchOp(String name, boolean anyShape) {
+        this.name = name;
+        this.anyShape = anyShape;
+    }
+    /**
+     * 計測の前に入力を用意する.
+     * @param a 入力の行列.
+     */
+    abstract void setup(Matrix a);
+    /**
+     * 演算を1回実行する.
+     * @return 演算結果（最適化で計算が消されないように, 呼び出し側で使う）.
+     */
+    abstract Object run();
+}
+
+/**
+ * {@code Matrix} の演算のベンチマークを実行するクラス.
+ * JMH と同様に, ウォームアップの後に一定時間ずつ計測を繰り返し, その平均を表示する.
+ */
+class MatrixBench {
+    /**
+     * ウォームアップの回数.
+     */
+    static int warmups = 3;
+    /**
+     * 計測の回数.
+     */
+    static int iterations = 5;
+    /**
+     * 1回の計測（ウォームアップ）にかける時間（ミリ秒）.
+     */
+    static long iterationMillis = 500;
+    /**
+     * 演算結果を捨てずに受ける変数. 計算が最適化で消されないようにするため.
+     */
+    static volatile Object sink;
+    /**
+     * スレッドごとの割り当てメモリ量を取得するためのオブジェクト.
+     */
+    static final com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+
+    /**
+     * 乱数で {@code m}×{@code n} の行列を作る.
+     * 各要素は確率 {@code density} で非ゼロ（-1 以上 1 未満の一様乱数）になる.
+     * 逆行列が掃き出し法で安定して求まるように, 正方行列のときは対角に {@code n} を足しておく.
+     * @param m 行数.
+     * @param n 列数.
+     * @param density 非ゼロ要素の割合.
+     * @param rnd 乱数生成器.
+     * @return 生成した行列.
+     */
+    static Matrix random(int m, int n, double density, Random rnd) {
+        Matrix ret = new Matrix(m, n);
+        for(int i = 0; i < m; i++) {
+            for(int j = 0; j < n; j++) {
+                if(rnd.nextDouble() < density) ret.vals[i][j] = rnd.nextDouble() * 2 - 1;
+            }
+            if(m == n) ret.vals[i][i] += n;
+        }
+        return ret;
+    }
+    /**
+     * 行列を, {@code mat} コマンドなどで入力するときの「ブロック」の形にする.
+     * @param a 行列.
+     * @return 「ブロック」（1行目はコマンド名）.
+     */
+    static List<String> toBlock(Matrix a) {
+        ArrayList<String> block = new ArrayList<String>();
+        block.add("mat");
+        for(int i = 0; i < a.m; i++) {
+            StringBuilder sb = new StringBuilder();
+            for(int j = 0; j < a.n; j++) {
+                if(j > 0) sb.append(' ');
+                sb.append(a.vals[i][j]);
+            }
+            block.add(sb.toString());
+        }
+        return block;
+    }
+    /**
+     * 計測対象の演算の一覧を作る.
+     * @return 演算の一覧.
+     */
+    static List<MatrixBenchOp> allOps() {
+        ArrayList<MatrixBenchOp> ops = new ArrayList<MatrixBenchOp>();
+        ops.add(new MatrixBenchOp("add", true) {
+            Matrix a, b;
+            void setup(Matrix x) { a = x; b = new Matrix(x); }
+            Object run() { return a.add(b); }
+        });
+        ops.add(new MatrixBenchOp("mul", true) {
+            Matrix a, b;
+            // 縦長行列は転置との積（小さい正方行列になる）を測る
+            void setup(Matrix x) { a = x.trans(); b = x; }
+            Object run() { return a.mul(b); }
+        });
+        ops.add(new MatrixBenchOp("inv", false) {
+            Matrix a;
+            void setup(Matrix x) { a = x; }
+            Object run() { return a.inv(a); }
+        });
+        ops.add(new MatrixBenchOp("div", false) {
+            Matrix a, b;
+            void setup(Matrix x) { a = x; b = new Matrix(x); }
+            Object run() { return a.div(b); }
+        });
+        ops.add(new MatrixBenchOp("trans", true) {
+            Matrix a;
+            void setup(Matrix x) { a = x; }
+            Object run() { return a.trans(); }
+        });
+        ops.add(new MatrixBenchOp("read", true) {
+            List<String> block;
+            void setup(Matrix x) { block = toBlock(x); }
+            Object run() { return Matrix.read(block); }
+        });
+        ops.add(new MatrixBenchOp("toString", true) {
+            Matrix a;
+            void setup(Matrix x) { a = x; }
+            Object run() { return a.toString(); }
+        });
+        return ops;
+    }
+    /**
+     * 現在までの GC の回数の合計を返す.
+     * @return GC の回数.
+     */
+    static long gcCount() {
+        long c = 0;
+        for(GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            c += Math.max(gc.getCollectionCount(), 0);
+        }
+        return c;
+    }
+    /**
+     * 1回分の計測（ウォームアップ）を行う.
+     * {@code iterationMillis} が経つまで（少なくとも1回）演算を繰り返す.
+     * @param op 演算.
+     * @return {実行回数, 経過時間（ナノ秒）, 割り当てメモリ量（バイト）}.
+     */
+    static long [] iteration(MatrixBenchOp op) {
+        long tid = Thread.currentThread().getId();
+        long deadline = iterationMillis * 1000000L;
+        long a0 = threads.getThreadAllocatedBytes(tid);
+        long t0 = System.nanoTime();
+        long ops = 0, elapsed;
+        do {
+            sink = op.run();
+            ops++;
+            elapsed = System.nanoTime() - t0;
+        } while(elapsed < deadline);
+        long bytes = threads.getThreadAllocatedBytes(tid) - a0;
+        return new long[] {ops, elapsed, bytes};
+    }
+    /**
+     * 一つの条件（演算・サイズ・形・密度）について, ウォームアップと計測を行い結果を1行表示する.
+     * @param op 演算.
+     * @param shape 形の名前.
+     * @param a 入力の行列.
+     * @param density 非ゼロ要素の割合.
+     */
+    static void measure(MatrixBenchOp op, String shape, Matrix a, double density) {
+        op.setup(a);
+        for(int i = 0; i < warmups; i++) iteration(op);
+        long ops = 0, nanos = 0, bytes = 0;
+        long gc0 = gcCount();
+        for(int i = 0; i < iterations; i++) {
+            long [] r = iteration(op);
+            ops += r[0];
+            nanos += r[1];
+            bytes += r[2];
+        }
+        long gcs = gcCount() - gc0;
+        double opsPerSec = ops / (nanos / 1e9);
+        System.out.println(String.format("%-9s %5dx%-5d %-6s %7.3f %14.3f %14d %10.1f %5d",
+                                         op.name, a.m, a.n, shape, density, opsPerSec, bytes / ops,
+                                         bytes / (nanos / 1e9) / (1 << 20), gcs));
+    }
+    /**
+     * カンマ区切りの文字列を整数のリストにする.
+     * @param s カンマ区切りの文字列.
+     * @return 整数のリスト.
+     */
+    static int [] parseInts(String s) {
+        String [] ts = s.split(",");
+        int [] ret = new int[ts.length];
+        for(int i = 0; i < ts.length; i++) ret[i] = Integer.parseInt(ts[i]);
+        return ret;
+    }
+    /**
+     * 指定された条件でベンチマークを実行する.
+     */
+    public static void main(String [] args) {
+        int [] sizes = {8, 64, 256, 1024};
+        double [] densities = {1.0, 0.01};
+        Set<String> names = null; // null なら全て
+        for(int i = 0; i + 1 < args.length; i += 2) {
+            if(args[i].equals("-sizes")) sizes = parseInts(args[i+1]);
+            else if(args[i].equals("-ops")) names = new HashSet<String>(Arrays.asList(args[i+1].split(",")));
+            else if(args[i].equals("-time")) iterationMillis = Long.parseLong(args[i+1]);
+            else if(args[i].equals("-wi")) warmups = Integer.parseInt(args[i+1]);
+            else if(args[i].equals("-i")) iterations = Integer.parseInt(args[i+1]);
+            else if(args[i].equals("-densities")) {
+                String [] ts = args[i+1].split(",");
+                densities = new double[ts.length];
+                for(int k = 0; k < ts.length; k++) densities[k] = Double.parseDouble(ts[k]);
+            } else {
+                System.out.println("java MatrixBench [-sizes 8,64,...] [-ops add,mul,...] [-densities 1,0.01] [-time ms] [-wi n] [-i n]");
+                return;
+            }
+        }
+        System.out.println(String.format("%-9s %-11s %-6s %7s %14s %14s %10s %5s",
+                                         "op", "size", "shape", "density", "ops/s", "alloc(B/op)", "MB/s", "gc"));
+        Random rnd = new Random(12345);
+        for(MatrixBenchOp op : allOps()) {
+            if(names != null && !names.contains(op.name)) continue;
+            for(int n : sizes) {
+                for(double d : densities) {
+                    measure(op, "square", random(n, n, d, rnd), d);
+                    // 縦長行列は 16:1（列数は最低 1）
+                    if(op.anyShape) measure(op, "tall", random(n, Math.max(n / 16, 1), d, rnd), d);
+                }
+            }
+        }
+    }
+}
@@ -9,6 +9,9 @@
 import java.util.*;
 import java.io.*;
 import java.math.*;
+import java.util.stream.*;
+import java.nio.*;
+import java.nio.channels.*;
 
 /**
  * 電卓の「結果」として使う行列を表すクラス. 
@@ -26,7 +29,9 @@ class Matrix {
     final int n;
     /**
      * 行列の要素. 
-     * 並びは自然な並びで： {@code vals[i][j]} が (i, j) 要素. 
+     * 並びは自然な並びで： {@code vals[i][j]} が (i, j) 要素. <br />
+     * 行列は変数や undo 用の履歴から共有されるので, 生成時に値を埋めた後は書き換えない. 
+     * 演算は常に新しい行列を作って返す. 
      */
     double [][] vals;
     /**
@@ -115,18 +120,36 @@ class Matrix {
         if(mat == null || n != mat.m ) return null;
         // あとは単純な加算
         //:poop:
-        Matrix ret = new Matrix(m, mat.n);
-        for(int i = 0; i < m; i++) {
-            for(int k=0; k< mat.n ;k++){
-                double c = 0;
-                for(int j = 0; j < n; j++) {
-                    c +=  this.vals[i][j] * mat.vals[j][k];
-                }
-                ret.vals[i][k] = c;
+        final Matrix ret = new Matrix(m, mat.n);
+        if((long)m * n * mat.n >= PARALLEL_MUL_THRESHOLD) {
+            // 大きい行列は行ごとに分けて共有の計算プールで並列に計算する（各要素の計算順は同じなので結果も同じ）
+            IntStream.range(0, m).parallel().forEach(i -> mulRow(mat, ret, i));
+        } else {
+            for(int i = 0; i < m; i++) {
+                mulRow(mat, ret, i);
             }
         }
         return ret;
     }
+    /**
+     * これ以上の乗算回数になる行列乗算は, 共有の計算プール（{@code ForkJoinPool.commonPool()}）で並列に行う. 
+     */
+    static final long PARALLEL_MUL_THRESHOLD = 1L << 18;
+    /**
+     * 行列乗算 {@code this} × {@code mat} の {@code i} 行目を計算して {@code ret} に書き込む. 
+     * @param mat 乗算する行列
+     * @param ret 結果を書き込む行列
+     * @param i 計算する行
+     */
+    void mulRow(Matrix mat, Matrix ret, int i) {
+        for(int k=0; k< mat.n ;k++){
+            double c = 0;
+            for(int j = 0; j < n; j++) {
+                c +=  this.vals[i][j] * mat.vals[j][k];
+            }
+            ret.vals[i][k] = c;
+        }
+    }
     /**
      * 与えられた整数と自身の乗算結果の行列を新たに生成して返す. 
      * @param mat 乗算する行列
@@ -150,19 +173,28 @@ class Matrix {
      *         サイズ違いなどで計算不可能な場合には {@code null}. 
      */
     Matrix div(Matrix mat) {
+        return div(mat, System.out);
+    }
+    /**
+     * 与えられた行列と自身の除算結果の行列を新たに生成して返す. 計算できない理由は {@code out} に表示する. 
+     * @param mat 除算する行列
+     * @param out メッセージの出力先. 
+     * @return 行列除算の結果となる行列. サイズ違いなどで計算不可能な場合には {@code null}. 
+     */
+    Matrix div(Matrix mat, PrintStream out) {
         Matrix invMat = new Matrix(m, n);
         Matrix ret = new Matrix(m, n);
         if(mat.n != m){
-            System.out.println(m +"×"+n+"行列と"+mat.m+"×"+mat.n+"行列は除算することができません.");
+            out.println(m +"×"+n+"行列と"+mat.m+"×"+mat.n+"行列は除算することができません.");
             return null;
         }
         //まずは逆行列を求める.
-        invMat = invMat.inv(mat);
+        invMat = invMat.inv(mat, out);
         if(ret.m == m && ret.n == n){
             ret = invMat.mul(this);
             return ret;
         }else{
-            System.out.println(m + "×" + n+ "行列と"+ret.m+"×"+ret.n+"行列は除算できません。");
+            out.println(m + "×" + n+ "行列と"+ret.m+"×"+ret.n+"行列は除算できません。");
             return null;
         }
     }
@@ -174,8 +206,17 @@ class Matrix {
      *         サイズ違いなどで計算不可能な場合には {@code null}. 
      */
     Matrix inv(Matrix mat) {
+        return inv(mat, System.out);
+    }
+    /**
+     * 与えられた行列の逆行列の行列を結果として返す. 計算できない理由は {@code out} に表示する. 
+     * @param mat 逆行列する行列
+     * @param out メッセージの出力先. 
+     * @return 逆行列行列となる行列. サイズ違いなどで計算不可能な場合には {@code null}. 
+     */
+    Matrix inv(Matrix mat, PrintStream out) {
         if(mat.m != mat.n){
-            System.out.println("入力された行列は正方行列でないので逆行列を持ちません.");
+            out.println("入力された行列は正方行列でないので逆行列を持ちません.");
             return null;
         }
         //掃き出し法を用いる.
@@ -190,7 +231,8 @@ class Matrix {
                 }
             }
         }
-        //掃き出し法
+        //掃き出し法. 与えられた行列は変数や履歴と共有されているので書き換えず, コピーの上で掃き出す.
+        mat = new Matrix(mat);
         for(int i = 0;i < mat.m; i++){
             double buf = 1 / mat.vals[i][i];
             for(int j = 0;j < mat.n;j++){
@@ -256,44 +298,53 @@ class Matrix {
      * @return {@code n}×{@code} の任意の行列
      */
     public static void help(ArrayList<String> commands,String option) {
+        help(commands, option, System.out);
+    }
+    /**
+     * コマンドの一覧, または指定したコマンドの説明を {@code out} に表示する. 
+     * @param commands コマンド名の一覧
+     * @param option {@code all} か, 説明を表示するコマンド名
+     * @param out 表示先
+     */
+    public static void help(ArrayList<String> commands,String option,PrintStream out) {
 
         boolean isExist = false;
         if(option.equals("all")){
-            System.out.println("コマンド一覧");
-            System.out.println("コマンドの詳細が知りたい場合は >>help コマンド名");
-            System.out.println(commands);
+            out.println("コマンド一覧");
+            out.println("コマンドの詳細が知りたい場合は >>help コマンド名");
+            out.println(commands);
             isExist = true;
         }else{
             for(String command: commands){
                 if(command.equals(option)){
-                    System.out.println(option +"コマンドは以下の通りです。");
-                    System.out.println("________________________________");
+                    out.println(option +"コマンドは以下の通りです。");
+                    out.println("________________________________");
                     try{
                         File file = new File("help/" + option + ".txt");
                         FileReader filereader = new FileReader(file);
                         int ch;
                         while((ch = filereader.read()) != -1){
-                            System.out.print((char)ch);
+                            out.print((char)ch);
                         }
                         
                         filereader.close();
                     }catch(FileNotFoundException e){
-                        System.out.println(e);
+                        out.println(e);
                     }catch(IOException e){
-                        System.out.println(e);
+                        out.println(e);
                     }
                     isExist = true;
-                    System.out.println("");
-                    System.out.println("________________________________");
+                    out.println("");
+                    out.println("________________________________");
                     break;
                 }
             }
         }
         if(!isExist){
-            System.out.println("そのようなコマンドは存在しません。");
-            System.out.println(">>help allでコマンドの一覧表示");
+            out.println("そのようなコマンドは存在しません。");
+            out.println(">>help allでコマンドの一覧表示");
         }
-        System.out.println(">>現在の行列");
+        out.println(">>現在の行列");
 
     }
 
@@ -303,30 +354,36 @@ class Matrix {
      * @return {@code n}×{@code} の単位行列. 行のサイズの食い違いなどで生成に失敗したら {@code null}
      */
     public static Matrix read(final List<String> block) {
-        try {
-            int m = block.size() - 1;  // 一行目は行列の中身ではないので無視して行数を決める
-            int n = -1;                // 列数は, 最初の行を見て決める
-            Matrix ret = null;
-            for(int i = 0; i < m; i++) {
-                StringTokenizer st = new StringTokenizer(block.get(i+1));
-                ArrayList<String> vs = new ArrayList<String>();
-                while(st.hasMoreTokens()) vs.add(st.nextToken());
-                if(n < 0) {  // 最初の行でサイズ確定 → 決定したサイズの行列をここで生成
-                    n = vs.size();
-                    ret = new Matrix(m, n);
-                } else if(n != vs.size()) {// 行の間でサイズの食い違いがあったら null
-                    return null;
-                }
-                // 要素をコピー
-                int j = 0;
-                for(String s : vs) {
-                    ret.vals[i][j++] = Double.parseDouble(s);
-                }
+        // パイプライン実行で読み込みスレッドが解析済みなら, それを使う（使うのは一度きり）
+        if(block instanceof PreParsedBlock) {
+            PreParsedBlock pb = (PreParsedBlock)block;
+            if(pb.payload instanceof Matrix) {
+                Matrix ret = (Matrix)pb.payload;
+                pb.payload = null;
+                return ret;
             }
-            return ret;
-        } catch(Exception e) { // なにか変な例外が生じた際にも生成失敗
         }
-        return null;
+        int m = block.size() - 1;  // 一行目は行列の中身ではないので無視して行数を決める
+        int n = -1;                // 列数は, 最初の行を見て決める
+        Matrix ret = null;
+        for(int i = 0; i < m; i++) {
+            StringTokenizer st = new StringTokenizer(block.get(i+1));
+            ArrayList<String> vs = new ArrayList<String>();
+            while(st.hasMoreTokens()) vs.add(st.nextToken());
+            if(n < 0) {  // 最初の行でサイズ確定 → 決定したサイズの行列をここで生成
+                n = vs.size();
+                ret = new Matrix(m, n);
+            } else if(n != vs.size()) {// 行の間でサイズの食い違いがあったら null
+                return null;
+            }
+            // 要素をコピー. 数でない要素があったら生成失敗（例外は使わずに先に調べる）
+            int j = 0;
+            for(String s : vs) {
+                if(!Tokens.isDouble(s)) return null;
+                ret.vals[i][j++] = Double.parseDouble(s);
+            }
+        }
+        return ret;
     }
     /**
      * 行列を表す文字列を返す. 
@@ -381,6 +438,66 @@ class MatrixValue implements Command<Matrix> {
     }
 }
 
+/**
+ * 行列の「結果」を, 行数と列数（int）に続けて全要素（double）を行ごとに並べた形で読み書きする. 
+ * 読み出しは, 行のまとまりごとにメモリマップして一括で {@code double} の配列に移す. 
+ */
+class MatrixCodec implements ResultCodec<Matrix> {
+    /**
+     * 一度にメモリマップする大きさの上限（バイト）. 
+     */
+    static final long MAP_LIMIT = 1L << 30;
+    public void write(FileChannel ch, Matrix r) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(8);
+        head.putInt(r.m).putInt(r.n).flip();
+        Checkpoint.writeFully(ch, head);
+        ByteBuffer row = ByteBuffer.allocate(8 * r.n);
+        for(int i = 0; i < r.m; i++) {
+            row.clear();
+            row.asDoubleBuffer().put(r.vals[i]);
+            Checkpoint.writeFully(ch, row);
+        }
+    }
+    public Matrix read(FileChannel ch, long offset, long length) throws IOException {
+        if(length < 8) throw new IOException("broken matrix: " + length + " bytes");
+        ByteBuffer head = ch.map(FileChannel.MapMode.READ_ONLY, offset, 8);
+        int m = head.getInt();
+        int n = head.getInt();
+        // 壊れたファイルで巨大な（または負の大きさの）行列を作らないように, 範囲の長さと突き合わせる
+        if(m < 0 || n < 0 || (length - 8) % 8 != 0 || (long)m * n != (length - 8) / 8) {
+            throw new IOException("broken matrix: " + m + "x" + n + " in " + length + " bytes");
+        }
+        Matrix ret = new Matrix(m, n);
+        long rowBytes = 8L * n;
+        int rows = (int)Math.max(1, Math.min(m, MAP_LIMIT / Math.max(rowBytes, 1)));
+        long pos = offset + 8;
+        for(int i = 0; i < m; i += rows) {
+            int k = Math.min(rows, m - i);
+            DoubleBuffer db = ch.map(FileChannel.MapMode.READ_ONLY, pos, k * rowBytes).asDoubleBuffer();
+            for(int r = 0; r < k; r++) {
+                db.get(ret.vals[i + r]);
+            }
+            pos += k * rowBytes;
+        }
+        return ret;
+    }
+    public long sizeOf(Matrix r) {
+        // オブジェクト, 行の配列, 各行の double の配列の分
+        return 24 + 16 + 8L * r.m + r.m * (16 + 8L * r.n);
+    }
+}
+
+/**
+ * パイプライン実行時に, 複数行「ブロック」の行列を読み込みスレッド側で先に読み込んでおくためのクラス. 
+ * 行列電卓の複数行「ブロック」は全て2行目以降が行列なので, コマンド名によらず {@code Matrix.read} しておく. 
+ */
+class MatrixPreParser implements BlockPreParser {
+    public Object preParse(final String [] ts, final List<String> block) {
+        if(block.size() <= 1) return null;
+        return Matrix.read(block);
+    }
+}
+
 /**
  * 単位行列を現在の「結果」にする「コマンド」. 
  * {@code eye} の後に整数値が並ぶ 1行の「ブロック」を受け付け, その整数値のサイズの単位行列を「結果」として返す. 
@@ -407,16 +524,25 @@ class IdentityMatrix implements Command<Matrix> {
  * anyn 2 10
  * }</pre></blockquote><p>
  */
-class anynMatrix implements Command<Matrix> {
+class anynMatrix implements Command<Matrix>, OutputAware {
+    /**
+     * メッセージの出力先. 電卓から {@code setOutput} で渡される. 
+     */
+    private PrintStream out = System.out;
+    public void setOutput(PrintStream out, PrintStream err) {
+        this.out = out;
+    }
     public Matrix tryExec(final String [] ts, final List<String> block, final Matrix r) {
         try {
             if(block.size() == 1){
                 if(ts.length == 3 && "anyn".equals(ts[0])) {
+                    if(!Tokens.isInt(ts[1])) return null;
                     // 単位行列の実際の生成は Matrix クラスにまかせる
                     if(Integer.parseInt(ts[1]) <= 1){
-                        System.out.println(Integer.parseInt(ts[1]));
+                        out.println(Integer.parseInt(ts[1]));
                         return null;
                     }else{
+                        if(!Tokens.isInt(ts[2])) return null;
                         return Matrix.anyn(Integer.parseInt(ts[1]),Integer.parseInt(ts[2]));
                     }
                 }
@@ -436,7 +562,14 @@ class anynMatrix implements Command<Matrix> {
  * help
  * }</pre></blockquote><p>
  */
-class CommandsHelp implements Command<Matrix> {
+class CommandsHelp implements Command<Matrix>, OutputAware {
+    /**
+     * メッセージの出力先. 電卓から {@code setOutput} で渡される. 
+     */
+    private PrintStream out = System.out;
+    public void setOutput(PrintStream out, PrintStream err) {
+        this.out = out;
+    }
     private ArrayList<String> helpCommands;
     /**
      * 変数の情報を保持する {@code Arraylist} オブジェクトを受け取るコンストラクタ. 
@@ -451,14 +584,16 @@ class CommandsHelp implements Command<Matrix> {
             if(block.size() == 1){
                 if(ts.length == 2 && "help".equals(ts[0])) {
                     // コマンドの表示は Matrix クラスにまかせる
-                    Matrix.help(helpCommands,ts[1]);
+                    Matrix.help(helpCommands,ts[1],out);
+                    return r;
                 }
             }
         } catch (Exception e) {
-            System.out.println(e);
+            out.println(e);
             return null;
         }
-        return r;
+        // help 以外の「ブロック」は後ろの「コマンド」に任せる
+        return null;
     }
 }
 
@@ -577,21 +712,39 @@ class MatrixMul extends CommandWithMemory<Matrix> {
         return null;
     }
 }
-class MatrixAnyMul implements Command<Matrix> {
+class MatrixAnyMul implements Command<Matrix>, OutputAware {
+    /**
+     * メッセージの出力先. 電卓から {@code setOutput} で渡される. 
+     */
+    private PrintStream out = System.out;
+    public void setOutput(PrintStream out, PrintStream err) {
+        this.out = out;
+    }
     public Matrix tryExec(final String [] ts, final List<String> block, final Matrix res) {
         try {
             if(block.size() == 1 && ts.length == 2 && "anymul".equals(ts[0])){
+                if(!Tokens.isInt(ts[1])) {
+                    out.println("anymul 任意の整数値　で入力してください");
+                    return null;
+                }
                 return res.anymul(Integer.parseInt(ts[1]));
             }
         } catch (Exception e) {
-            System.out.println(e);
-            System.out.println("anymul 任意の整数値　で入力してください");
+            out.println(e);
+            out.println("anymul 任意の整数値　で入力してください");
             return null;
         }
         return null;
     }
 }
-class MatrixDiv extends CommandWithMemory<Matrix> {
+class MatrixDiv extends CommandWithMemory<Matrix> implements OutputAware {
+    /**
+     * メッセージの出力先. 電卓から {@code setOutput} で渡される. 
+     */
+    private PrintStream out = System.out;
+    public void setOutput(PrintStream out, PrintStream err) {
+        this.out = out;
+    }
     /**
      * 変数の情報を保持する {@code Memory} オブジェクトを受け取るコンストラクタ. 
      * @param mem 変数の情報を保持するオブジェクト. 
@@ -604,18 +757,25 @@ class MatrixDiv extends CommandWithMemory<Matrix> {
         if(block.size() > 1 && ts.length == 1 && "div".equals(ts[0])){
             // 実際の読み込みと加算は Matrix クラスに任せる
             Matrix v = Matrix.read(block);
-            return res.div(v);
+            return res.div(v, out);
         }
         // 行列を保存した変数が指定された場合
         if(block.size() == 1 && ts.length == 2 && "div".equals(ts[0])) {
             // 変数の値をメモリから取得
             Matrix v = mem.get(ts[1]);
-            return res.div(v); // 実際の加算は Matrix クラス任せ
+            return res.div(v, out); // 実際の加算は Matrix クラス任せ
         }
         return null;
     }
 }
-class MatrixInv extends CommandWithMemory<Matrix> {
+class MatrixInv extends CommandWithMemory<Matrix> implements OutputAware {
+    /**
+     * メッセージの出力先. 電卓から {@code setOutput} で渡される. 
+     */
+    private PrintStream out = System.out;
+    public void setOutput(PrintStream out, PrintStream err) {
+        this.out = out;
+    }
     /**
      * 変数の情報を保持する {@code Memory} オブジェクトを受け取るコンストラクタ. 
      * @param mem 変数の情報を保持するオブジェクト. 
@@ -628,26 +788,139 @@ class MatrixInv extends CommandWithMemory<Matrix> {
         if(block.size() > 1 && ts.length == 1 && "inv".equals(ts[0])){
             // 実際の読み込みと加算は Matrix クラスに任せる
             Matrix v = Matrix.read(block);
-            return res.inv(v);
+            return res.inv(v, out);
         }
         // 行列を保存した変数が指定された場合
         if(block.size() == 1 && ts.length == 2 && "inv".equals(ts[0])) {
             // 変数の値をメモリから取得
             Matrix v = mem.get(ts[1]);
-            return res.inv(v); // 実際の加算は Matrix クラス任せ
+            return res.inv(v, out); // 実際の加算は Matrix クラス任せ
         }
         return null;
     }
 }
+/**
+ * 変数に保存した複数の行列の積を, 掛ける順序を最適化して計算する「コマンド」.
+ * <p><blockquote><pre>{@code
+ * chain x y z
+ * }</pre></blockquote><p>
+ * のように {@code chain} の後ろに変数名を 2つ以上並べた 1行の「ブロック」を受け付け,
+ * それらの変数に保存された行列の積 x y z を「結果」として返す. <br />
+ * 行列積は結合則を満たすのでどの順に掛けても値は（丸め誤差を除いて）変わらないが,
+ * 乗算回数は順序によって大きく変わる（縦長×横長×... のような場合には桁違いになる）.
+ * そこで各行列のサイズから動的計画法で乗算回数が最小となる順序を求め, その順序で {@code Matrix.mul} を行う.
+ * 計算前に, 選んだ順序と, 左から順に掛けた場合と比べて削減できる乗算回数の見積もりを表示する.
+ */
+class MatrixChainMul extends CommandWithMemory<Matrix> implements OutputAware {
+    /**
+     * メッセージの出力先. 電卓から {@code setOutput} で渡される. 
+     */
+    private PrintStream out = System.out;
+    public void setOutput(PrintStream out, PrintStream err) {
+        this.out = out;
+    }
+    /**
+     * 変数の情報を保持する {@code Memory} オブジェクトを受け取るコンストラクタ.
+     * @param mem 変数の情報を保持するオブジェクト.
+     */
+    MatrixChainMul(Memory<Matrix> mem) {
+        super(mem); // 親のコンストラクタをそのまま呼ぶだけ
+    }
+    /**
+     * 変数の行列を最適な順序で掛け合わせる.
+     * 変数が見つからない場合には {@code UnknownVariableException} 例外を投げる.
+     * サイズが合わず掛け算できない場合にはメッセージを表示して {@code null} を返す.
+     */
+    public Matrix tryExec(final String [] ts, final List<String> block, final Matrix res) {
+        if(block.size() != 1) return null;
+        if(ts.length < 3 || !"chain".equals(ts[0])) return null;
+        // 変数の行列を集める
+        int k = ts.length - 1;
+        Matrix [] ms = new Matrix[k];
+        for(int i = 0; i < k; i++) {
+            ms[i] = mem.get(ts[i+1]);
+            if(ms[i] == null) throw new UnknownVariableException(ts[i+1]);
+        }
+        // i 番目の行列は dims[i]×dims[i+1]
+        long [] dims = new long[k+1];
+        dims[0] = ms[0].m;
+        for(int i = 0; i < k; i++) {
+            if(ms[i].m != dims[i]) {
+                out.println(ts[i] + " と " + ts[i+1] + " はサイズが合わないので乗算できません.");
+                return null;
+            }
+            dims[i+1] = ms[i].n;
+        }
+        // cost[i][j] : i 番目から j 番目までの積の最小乗算回数, split[i][j] : そのときの最後の分割位置
+        long [][] cost = new long[k][k];
+        int [][] split = new int[k][k];
+        for(int len = 2; len <= k; len++) {
+            for(int i = 0; i + len - 1 < k; i++) {
+                int j = i + len - 1;
+                cost[i][j] = Long.MAX_VALUE;
+                for(int s = i; s < j; s++) {
+                    long c = cost[i][s] + cost[s+1][j] + dims[i] * dims[s+1] * dims[j+1];
+                    if(c < cost[i][j]) {
+                        cost[i][j] = c;
+                        split[i][j] = s;
+                    }
+                }
+            }
+        }
+        // 左から順に掛けた場合の乗算回数
+        long naive = 0;
+        for(int i = 1; i < k; i++) {
+            naive += dims[0] * dims[i] * dims[i+1];
+        }
+        long best = cost[0][k-1];
+        out.println("順序: " + order(ts, split, 0, k-1));
+        out.println("乗算回数: 左から順 = " + naive + ", 最適 = " + best + " (" + (naive - best) + " 回削減)");
+        return multiply(ms, split, 0, k-1);
+    }
+    /**
+     * 分割位置の表に従って {@code i} 番目から {@code j} 番目までの行列の積を計算する.
+     * @param ms 行列の並び.
+     * @param split 動的計画法で求めた分割位置の表.
+     * @param i 範囲の先頭.
+     * @param j 範囲の末尾.
+     * @return 範囲内の行列の積.
+     */
+    Matrix multiply(Matrix [] ms, int [][] split, int i, int j) {
+        if(i == j) return ms[i];
+        int s = split[i][j];
+        return multiply(ms, split, i, s).mul(multiply(ms, split, s+1, j));
+    }
+    /**
+     * 分割位置の表に従った掛ける順序を, 括弧付きの文字列にする.
+     * 例えば {@code ((x y) z)} のような文字列となる.
+     * @param ts 「ブロック」のトークン（変数名は1番目から）.
+     * @param split 動的計画法で求めた分割位置の表.
+     * @param i 範囲の先頭.
+     * @param j 範囲の末尾.
+     * @return 掛ける順序を表す文字列.
+     */
+    String order(String [] ts, int [][] split, int i, int j) {
+        if(i == j) return ts[i+1];
+        int s = split[i][j];
+        return "(" + order(ts, split, i, s) + " " + order(ts, split, s+1, j) + ")";
+    }
+}
 //現在の行列の転置行列を求める
-class MatrixTrans implements Command<Matrix> {
+class MatrixTrans implements Command<Matrix>, OutputAware {
+    /**
+     * メッセージの出力先. 電卓から {@code setOutput} で渡される. 
+     */
+    private PrintStream out = System.out;
+    public void setOutput(PrintStream out, PrintStream err) {
+        this.out = out;
+    }
     public Matrix tryExec(final String [] ts, final List<String> block, final Matrix res) {
         try {
             if(block.size() == 1 && ts.length == 1 && "trans".equals(ts[0])){
                 return res.trans();
             }
         } catch (Exception e) {
-            System.out.println(e);
+            out.println(e);
             return null;
         }
         return null;
@@ -696,13 +969,123 @@ class MatrixTrans implements Command<Matrix> {
  * さらに {@cdoe add x} と入力し, 
  * それに対して {@code MatrixAdd} が動作して変数 x に保存した行列が加算され, 
  * 最後に {@code eye 2} と入力し, 
- * それに対して {@code IdentityMatrix} が動いて「結果」が 2x2 の単位行列となった. 
+ * それに対して {@code IdentityMatrix} が動いて「結果」が 2x2 の単位行列となった. <br />
+ * なお, {@code java MatrixCalc -p < script.txt} のように {@code -p} を付けると, 
+ * 入力の読み込みと行列の解析を別スレッドで先行させるパイプライン実行になる（プロンプトは表示されない）. 
+ * また, {@code -csv stats.csv} を付けると, 終了時に「コマンド」ごとの実行時間などの計測結果を CSV で書き出す. 
+ * {@code -checkpoint vars.bin} を付けると, 起動時にそのファイルから変数を復元し, 終了時にそのファイルへ保存する. 
+ * {@code -budget 512m} を付けると, 変数に置く行列の大きさの合計がそれを超えたときに, 
+ * 最も長く使われていない変数から一時ファイル（{@code -spill dir} で指定したディレクトリ. 既定は java.io.tmpdir）に追い出す. 
+ * undo/redo の履歴に置く行列にも同じ大きさの予算をかけ, 超えたら古いものから捨てる. 
  */
 class MatrixCalc {
     /**
      * 電卓を作って実行する. 
      */
     public static void main(String [] args) throws Exception {
+        // 入力は標準入力から
+        BufferedReader br = new BufferedReader(new InputStreamReader(System.in));
+        // 電卓の生成
+        Calculator<Matrix> c = create(br);
+        long budget = 0;
+        File spillDir = new File(System.getProperty("java.io.tmpdir"));
+        for(int i = 0; i < args.length; i++) {
+            if(args[i].equals("-p")) {
+                // 入力の読み込みと行列の解析を別スレッドで先行させる
+                c.pipelineDepth = 16;
+                c.preParser = new MatrixPreParser();
+            } else if(args[i].equals("-csv") && i + 1 < args.length) {
+                // 終了時に「コマンド」ごとの計測結果を CSV に書き出す
+                c.stats.csvFile = args[++i];
+            } else if(args[i].equals("-budget") && i + 1 < args.length) {
+                // 変数に置く行列の大きさの予算. 超えたら使われていないものからディスクに追い出す
+                budget = parseBytes(args[++i]);
+            } else if(args[i].equals("-spill") && i + 1 < args.length) {
+                spillDir = new File(args[++i]);
+            } else if(args[i].equals("-checkpoint") && i + 1 < args.length) {
+                // 起動時にファイルから変数を復元し, 終了時にファイルへ保存する
+                autoCheckpoint(c, args[++i]);
+            }
+        }
+        if(budget > 0) {
+            final Memory<Matrix> mem = checkpointOf(c).mem;
+            MatrixCodec codec = new MatrixCodec();
+            mem.setBudget(budget, codec, spillDir);
+            // 履歴は行列を直接持つので, 変数を追い出しても履歴にある分はヒープに残る. 履歴も大きさで抑える
+            c.history.setBudget(budget, codec::sizeOf);
+            // 終了時に追い出し用の一時ファイルを消す（-checkpoint の保存より後に実行される）
+            c.exitHooks.add(new Runnable() {
+                public void run() {
+                    mem.close();
+                }
+            });
+        }
+        // 初期値は 2x2 のゼロ行列
+        c.run(new Matrix(2,2));
+    }
+    /**
+     * {@code 512m} のような大きさの指定をバイト数にする. 末尾の k, m, g はそれぞれ 2^10, 2^20, 2^30 倍. 
+     * @param s 大きさの指定. 
+     * @return バイト数. 
+     */
+    static long parseBytes(String s) {
+        long unit = 1;
+        char c = Character.toLowerCase(s.charAt(s.length() - 1));
+        if(c == 'k') unit = 1L << 10;
+        if(c == 'm') unit = 1L << 20;
+        if(c == 'g') unit = 1L << 30;
+        if(unit > 1) s = s.substring(0, s.length() - 1);
+        return Long.parseLong(s) * unit;
+    }
+    /**
+     * 電卓の変数を, 起動時にファイルから復元し（ファイルがあれば）, 終了時にそのファイルへ保存するようにする. 
+     * 復元は {@code restore} と同じく変数を使うときに読み込むので, 大きなファイルでもすぐに始められる. 
+     * @param c 電卓. 
+     * @param file 保存先のファイル名. 
+     */
+    static void autoCheckpoint(final Calculator<Matrix> c, final String file) throws IOException {
+        final Checkpoint<Matrix> cp = checkpointOf(c);
+        if(new File(file).exists()) cp.restore(file);
+        c.exitHooks.add(new Runnable() {
+            public void run() {
+                try {
+                    cp.save(file);
+                } catch(IOException e) {
+                    c.err.println("checkpoint failed: " + e);
+                }
+            }
+        });
+    }
+    /**
+     * 電卓のコマンドリストから {@code Checkpoint} を探す. 
+     * @param c 電卓. 
+     * @return 見つかった {@code Checkpoint}. 
+     */
+    @SuppressWarnings("unchecked")
+    static Checkpoint<Matrix> checkpointOf(Calculator<Matrix> c) {
+        for(Command<Matrix> cm : c.comms) {
+            if(cm instanceof Checkpoint) return (Checkpoint<Matrix>)cm;
+        }
+        throw new IllegalStateException("no checkpoint command");
+    }
+    /**
+     * 行列電卓の「コマンド」のリストと変数用のメモリを用意して, 新たな電卓を生成する. 
+     * 電卓ごとに別のメモリを持つので, 複数の電卓を同時に動かしても変数は混ざらない. 
+     * @param br 電卓の入力. 
+     * @return 生成した電卓. 
+     */
+    static Calculator<Matrix> create(BufferedReader br) {
+        return create(br, System.out, System.err);
+    }
+    /**
+     * 出力先を指定して, 新たな行列電卓を生成する. 
+     * 「結果」もメッセージも全てこの出力先に書くので, 1つの JVM で複数の電卓を動かしても出力は混ざらない. 
+     * @param br 電卓の入力. 
+     * @param out 「結果」やメッセージの出力先. 
+     * @param err 警告やエラーの出力先. 
+     * @return 生成した電卓. 
+     */
+    static Calculator<Matrix> create(BufferedReader br, PrintStream out, PrintStream err) {
         // 行列を記憶する変数のための Memory インスタンス
         Memory<Matrix> mem = new Memory<Matrix>();
         // コマンドリストの作成
@@ -721,6 +1104,8 @@ class MatrixCalc {
         commands.add("sub");
         comms.add(new MatrixMul(mem));
         commands.add("mul");
+        comms.add(new MatrixChainMul(mem));
+        commands.add("chain");
         comms.add(new MatrixDiv(mem));
         commands.add("div");
         comms.add(new MatrixInv(mem));
@@ -733,14 +1118,22 @@ class MatrixCalc {
         commands.add("trans");
         comms.add(new LoadStore<Matrix>(mem));
         commands.add("store");
+        comms.add(new Checkpoint<Matrix>(mem, new MatrixCodec()));
+        commands.add("checkpoint");
+        commands.add("restore");
+        History<Matrix> history = new History<Matrix>(100);
+        comms.add(history);
+        commands.add("undo");
+        commands.add("redo");
+        CommandStats<Matrix> stats = new CommandStats<Matrix>();
+        comms.add(stats);
+        commands.add("stats");
         comms.add(new CommandsHelp(commands));
         commands.add("help");
         comms.add(mem);
-        // 入力は標準入力から
-        BufferedReader br = new BufferedReader(new InputStreamReader(System.in));
-        // 電卓の生成と実行
-        Calculator<Matrix> c = new Calculator<Matrix>(br, comms);
-        // 初期値は 2x2 のゼロ行列
-        c.run(new Matrix(2,2));
+        Calculator<Matrix> c = new Calculator<Matrix>(br, out, err, comms);
+        c.history = history;
+        c.stats = stats;
+        return c;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,248 @@
+/*
+ * 行列電卓を複数のユーザで共有するためのサーバ.
+ * ひとつの JVM の中で, 接続（セッション）ごとに独立した電卓を動かす.
+ * コンパイル & 実行：
+ * javac Calculator.java IntCalc.java MemoCalc.java MatrixCalc.java MatrixServer.java
+ * java MatrixServer 5555
+ * java MatrixLoadGen 5555 16 200      （別のターミナルから負荷をかけ, 応答時間を測る）
+ * java MatrixLoadGen -local 16 200    （サーバも同じ JVM の中で立ち上げて測る）
+ */
+
+import java.util.*;
+import java.io.*;
+import java.net.*;
+import java.util.concurrent.*;
+
+/**
+ * 行列電卓のサーバ.
+ * TCP の接続ごとに {@code MatrixCalc.create} で新たな電卓（変数のメモリも別）を作り,
+ * その接続から読み込んだ「ブロック」を実行して, 「結果」やプロンプトを接続先に返す. 
+ * 出力先はセッションごとに別の {@code PrintStream} なので, 読み込みの遅い接続先があっても, 待たされるのはそのセッションだけ. <br />
+ * 全てのセッションがひとつの JVM を共有するので, 起動や JIT のウォームアップはサーバの起動時に一度だけで済み,
+ * 大きな行列の乗算は全セッション共有の計算プール（{@code ForkJoinPool.commonPool()}）で行われる.
+ * セッションのスレッドは, 使える JVM（Java 21 以降）では仮想スレッド, そうでなければ通常のスレッドプールで動かす.
+ */
+class MatrixServer {
+    /**
+     * 接続を受け付けるソケット.
+     */
+    private final ServerSocket ss;
+    /**
+     * セッションを動かすスレッドの管理.
+     */
+    private final ExecutorService sessions;
+    /**
+     * 指定したポートで接続を受け付けるサーバを作るコンストラクタ.
+     * @param port ポート番号. 0 なら空いているポートを使う.
+     */
+    MatrixServer(int port) throws IOException {
+        ss = new ServerSocket(port, 128, InetAddress.getLoopbackAddress()); // 手元の接続のみ受け付ける
+        sessions = newSessionExecutor();
+    }
+    /**
+     * セッション用のスレッドプールを作る.
+     * 仮想スレッドが使える JVM ならセッションごとに仮想スレッドを, そうでなければ通常のスレッドを使う.
+     * @return セッション用のスレッドプール.
+     */
+    static ExecutorService newSessionExecutor() {
+        try {
+            return (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch(Exception e) { // 仮想スレッドのない JVM
+            return Executors.newCachedThreadPool();
+        }
+    }
+    /**
+     * 接続を受け付けているポート番号を返す.
+     * @return ポート番号.
+     */
+    int getPort() {
+        return ss.getLocalPort();
+    }
+    /**
+     * 接続を受け付け, 接続ごとにセッションを開始する.
+     * {@code close} が呼ばれるまで戻らない.
+     */
+    void serve() {
+        try {
+            for(;;) {
+                final Socket s = ss.accept();
+                sessions.execute(new Runnable() {
+                    public void run() {
+                        session(s);
+                    }
+                });
+            }
+        } catch(IOException e) { // close されたら終了
+        }
+    }
+    /**
+     * 一つの接続に対して電卓を作って動かす.
+     * 入力が尽きる（接続が閉じられる）か, 「コマンド」が例外を投げたら終了する.
+     * @param s 接続.
+     */
+    void session(Socket s) {
+        PrintStream ps = null;
+        try {
+            s.setTcpNoDelay(true); // プロンプトなどの小さな書き込みを待たせない
+            // このセッションだけの出力先. 「結果」もエラーもプロンプトも接続先に返す
+            ps = new PrintStream(s.getOutputStream(), true);
+            BufferedReader br = new BufferedReader(new InputStreamReader(s.getInputStream()));
+            MatrixCalc.create(br, ps, ps).run(new Matrix(2,2));
+        } catch(Exception e) {
+            if(ps != null) ps.println(e); // セッションの接続先に表示する
+        } finally {
+            try {
+                s.close();
+            } catch(IOException e) {
+            }
+        }
+    }
+    /**
+     * 接続の受け付けをやめ, セッション用のスレッドプールを閉じる.
+     */
+    void close() throws IOException {
+        ss.close();
+        sessions.shutdown();
+    }
+    /**
+     * 指定されたポートでサーバを動かす.
+     */
+    public static void main(String [] args) throws Exception {
+        if(args.length < 1) {
+            System.out.println("java MatrixServer port");
+            return;
+        }
+        MatrixServer server = new MatrixServer(Integer.parseInt(args[0]));
+        System.out.println("listening on " + server.getPort());
+        server.serve();
+    }
+}
+
+/**
+ * {@code MatrixServer} に複数のセッションから同時に「ブロック」を送り, 応答時間を測る負荷生成器.
+ * 各セッションは, 行列の生成・保存・乗算などからなる 1行「ブロック」を順に送り,
+ * 送ってから次のプロンプト {@code >> } が返ってくるまでの時間を測る.
+ * 最後に全セッションの応答時間の分位点（p50/p90/p99/最大）とスループットを表示する.
+ */
+class MatrixLoadGen {
+    /**
+     * 各セッションが繰り返し送る「ブロック」. {@code %d} は行列のサイズに置き換える.
+     */
+    static final String [] script = {
+        "anyn %d 2", "store x", "mul x", "trans", "sub x", "anymul 3", "add x",
+    };
+    public static void main(String [] args) throws Exception {
+        if(args.length < 3) {
+            System.out.println("java MatrixLoadGen (port | -local) sessions requests [size]");
+            System.out.println("  -local : start a MatrixServer in this JVM");
+            return;
+        }
+        MatrixServer server = null;
+        int port;
+        if(args[0].equals("-local")) { // 同じ JVM の中でサーバを立ち上げる
+            server = new MatrixServer(0);
+            port = server.getPort();
+            final MatrixServer sv = server;
+            Thread t = new Thread(new Runnable() {
+                public void run() {
+                    sv.serve();
+                }
+            });
+            t.setDaemon(true);
+            t.start();
+        } else {
+            port = Integer.parseInt(args[0]);
+        }
+        final int sessions = Integer.parseInt(args[1]);
+        final int requests = Integer.parseInt(args[2]);
+        final int size = args.length >= 4 ? Integer.parseInt(args[3]) : 32;
+        final int p = port;
+        final long [][] lats = new long[sessions][];
+        Thread [] clients = new Thread[sessions];
+        long t0 = System.nanoTime();
+        for(int k = 0; k < sessions; k++) {
+            final int kk = k;
+            clients[k] = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        lats[kk] = runSession(p, requests, size);
+                    } catch(IOException e) {
+                        System.err.println("session " + kk + ": " + e);
+                        lats[kk] = new long[0];
+                    }
+                }
+            });
+            clients[k].start();
+        }
+        for(Thread t : clients) t.join();
+        long elapsed = System.nanoTime() - t0;
+        if(server != null) server.close();
+        // 全セッションの応答時間をまとめて並べる
+        int total = 0;
+        for(long [] l : lats) total += l.length;
+        long [] all = new long[total];
+        int idx = 0;
+        for(long [] l : lats) {
+            System.arraycopy(l, 0, all, idx, l.length);
+            idx += l.length;
+        }
+        Arrays.sort(all);
+        System.out.println("sessions = " + sessions + ", requests = " + total + ", size = " + size);
+        System.out.printf("throughput = %.1f req/s%n", total / (elapsed / 1e9));
+        System.out.printf("latency (ms): p50 = %.3f, p90 = %.3f, p99 = %.3f, max = %.3f%n",
+                          percentile(all, 0.50), percentile(all, 0.90), percentile(all, 0.99), percentile(all, 1.0));
+    }
+    /**
+     * 一つのセッションを開き, {@code requests} 個の「ブロック」を送ってそれぞれの応答時間を測る.
+     * @param port サーバのポート番号.
+     * @param requests 送る「ブロック」の数.
+     * @param size 生成する行列のサイズ.
+     * @return 各「ブロック」の応答時間（ナノ秒）.
+     */
+    static long [] runSession(int port, int requests, int size) throws IOException {
+        long [] lat = new long[requests];
+        Socket s = new Socket(InetAddress.getLoopbackAddress(), port);
+        try {
+            s.setTcpNoDelay(true);
+            InputStream in = new BufferedInputStream(s.getInputStream());
+            Writer w = new OutputStreamWriter(s.getOutputStream());
+            waitPrompt(in); // 最初のプロンプトを待つ
+            for(int r = 0; r < requests; r++) {
+                String line = String.format(script[r % script.length], size);
+                long t = System.nanoTime();
+                w.write(line + "\n");
+                w.flush();
+                waitPrompt(in);
+                lat[r] = System.nanoTime() - t;
+            }
+        } finally {
+            s.close();
+        }
+        return lat;
+    }
+    /**
+     * 次のプロンプト {@code >> } が来るまで読み飛ばす.
+     * @param in サーバからの入力.
+     */
+    static void waitPrompt(InputStream in) throws IOException {
+        int b2 = 0, b1 = 0;
+        for(;;) {
+            int b = in.read();
+            if(b < 0) throw new EOFException("connection closed");
+            if(b2 == '>' && b1 == '>' && b == ' ') return;
+            b2 = b1;
+            b1 = b;
+        }
+    }
+    /**
+     * 並べ替え済みの応答時間から分位点をミリ秒で返す.
+     * @param sorted 昇順に並べた応答時間（ナノ秒）.
+     * @param q 分位（0 より大きく 1 以下）.
+     * @return 分位点（ミリ秒）.
+     */
+    static double percentile(long [] sorted, double q) {
+        if(sorted.length == 0) return 0;
+        int i = (int)Math.ceil(q * sorted.length) - 1;
+        return sorted[Math.max(i, 0)] / 1e6;
+    }
+}
@@ -8,6 +8,9 @@
 import java.util.*;
 import java.io.*;
 import java.math.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
 
 /**
  * 変数に「結果」を記憶しておくメモリを表すクラス. 
@@ -18,25 +21,100 @@ import java.math.*;
  * という1トークンからなる1行「ブロック」を受け付ける. 
  * @param Result 変数に入れる「結果」の型
  */
-class Memory<Result> implements Command<Result> {
+class Memory<Result> implements Command<Result>, OutputAware {
+    /**
+     * メッセージの出力先. 電卓から {@code setOutput} で渡される. 
+     */
+    private PrintStream out = System.out, err = System.err;
+    public void setOutput(PrintStream out, PrintStream err) {
+        this.out = out;
+        this.err = err;
+    }
     /**
      * 変数名（String）から「結果」への連想配列. これに変数の情報を保存する. 
+     * 並びは最近使った順（最後が最新）で, 予算を超えたときに追い出す変数を決めるのに使う. 
+     */
+    LinkedHashMap<String, Result> mem;
+    /**
+     * スナップショットから復元したがまだ読み込んでいない変数と, 予算を超えてディスクに追い出した変数. 
+     * 最初に {@code get} されたときに読み込んで {@code mem} に移す. 
+     */
+    HashMap<String, LazyResult<Result>> lazy;
+    /**
+     * {@code mem} に置く「結果」の大きさの合計の上限（バイト）. 0 なら上限なし. 
+     */
+    long budget;
+    /**
+     * {@code mem} にある「結果」の大きさの合計（バイト）. 
+     */
+    long used;
+    /**
+     * 「結果」の大きさの見積もりと, ディスクへの読み書きの方法. 予算を使わないときは {@code null}. 
      */
-    HashMap<String, Result> mem;
+    ResultCodec<Result> codec;
+    /**
+     * 追い出した変数を書き込むディレクトリ. 
+     */
+    File spillDir;
+    /**
+     * {@code mem} にあった変数を {@code get} した回数. 
+     */
+    long hits;
+    /**
+     * {@code mem} になくディスクから読み込んだ回数. 
+     */
+    long misses;
+    /**
+     * ディスクに追い出した回数. 
+     */
+    long spills;
     /**
      * 何の変数も存在していないメモリを作るコンストラクタ. 
      */
     Memory() {
-        mem = new HashMap<String, Result>();
+        mem = new LinkedHashMap<String, Result>(16, 0.75f, true); // 参照順に並べる
+        lazy = new HashMap<String, LazyResult<Result>>();
+    }
+    /**
+     * メモリに置く「結果」の大きさに予算を設定する. 
+     * 予算を超えたら最も長く使われていない変数からディスクに追い出し, 次に使われたときに読み戻す. 
+     * @param budget 予算（バイト）. 0 なら上限なし. 
+     * @param codec 「結果」の大きさの見積もりと, ディスクへの読み書きの方法. 
+     * @param spillDir 追い出した変数を書き込むディレクトリ. 
+     */
+    void setBudget(long budget, ResultCodec<Result> codec, File spillDir) {
+        this.budget = budget;
+        this.codec = codec;
+        this.spillDir = spillDir;
+        used = 0;
+        for(Result r : mem.values()) used += codec.sizeOf(r);
+        evict();
     }
     /**
      * 変数に保存されている「結果」を返す. 
      * 実際のところは連想配列に問い合わせるだけ. 
+     * まだ読み込んでいない変数やディスクに追い出した変数なら, ここで読み込む. 
      * @param var 変数名
      * @return その変数に保存された「結果」. なければ {@code null}
      */
     public Result get(String var) {
-        return mem.get(var);
+        Result r = mem.get(var);
+        if(r != null) {
+            hits++;
+            return r;
+        }
+        LazyResult<Result> l = lazy.get(var);
+        if(l == null) return null;
+        misses++;
+        r = load(var, l); // 失敗したら変数は読み込んでいないまま残す
+        lazy.remove(var);
+        if(l instanceof SnapshotEntry) ((SnapshotEntry<Result>)l).release();
+        mem.put(var, r);
+        if(codec != null) {
+            used += codec.sizeOf(r);
+            evict();
+        }
+        return r;
     }
     /**
      * 変数に与えられた「結果」を保存する. 
@@ -45,21 +123,106 @@ class Memory<Result> implements Command<Result> {
      * @param val その変数に保存する「結果」
      */
     public void put(String var, Result val) {
-        mem.put(var, val);
+        discardLazy(var);
+        Result old = mem.put(var, val);
+        if(codec != null) {
+            if(old != null) used -= codec.sizeOf(old);
+            used += codec.sizeOf(val);
+            evict();
+        }
+    }
+    /**
+     * 変数に, 必要になったときに読み込む「結果」を保存する. 
+     * @param var 変数名
+     * @param val その変数に保存する, まだ読み込んでいない「結果」
+     */
+    public void putLazy(String var, LazyResult<Result> val) {
+        discardLazy(var);
+        Result old = mem.remove(var);
+        if(old != null && codec != null) used -= codec.sizeOf(old);
+        lazy.put(var, val);
+    }
+    /**
+     * まだ読み込んでいない変数を読み込む. 
+     * @param var 変数名
+     * @param l まだ読み込んでいない「結果」
+     * @return 読み込んだ「結果」
+     * @throws UncheckedIOException 読み込みに失敗した場合. メッセージは変数名を含む "load failed: ..." の形. 
+     */
+    private Result load(String var, LazyResult<Result> l) {
+        try {
+            return l.load();
+        } catch(UncheckedIOException e) {
+            throw new UncheckedIOException("load failed: " + var + ": " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+    /**
+     * まだ読み込んでいない変数を捨てる. 
+     * その変数が最後に参照していたスナップショットなら閉じ, ディスクに追い出したものならそのファイルも消す. 
+     * @param var 変数名
+     */
+    private void discardLazy(String var) {
+        LazyResult<Result> l = lazy.remove(var);
+        if(l instanceof SnapshotEntry) ((SnapshotEntry<Result>)l).release();
+    }
+    /**
+     * 予算を超えている間, 最も長く使われていない変数からディスクに追い出す. 
+     * 最後に使った変数だけは追い出さない. 
+     * 書き込みに失敗した場合は追い出しをやめて, メモリに置いたままにする. 
+     */
+    void evict() {
+        if(budget <= 0 || codec == null) return;
+        while(used > budget && mem.size() > 1) {
+            Map.Entry<String, Result> e = mem.entrySet().iterator().next(); // 最も長く使われていないもの
+            SpillEntry<Result> se;
+            try {
+                se = SpillEntry.spill(e.getValue(), codec, spillDir);
+            } catch(IOException ex) {
+                err.println("cannot spill " + e.getKey() + ": " + ex);
+                return;
+            }
+            used -= codec.sizeOf(e.getValue());
+            lazy.put(e.getKey(), se);
+            mem.remove(e.getKey());
+            spills++;
+        }
+    }
+    /**
+     * まだ読み込んでいない変数を全て捨てる. 開いているスナップショットは閉じ, 追い出し用の一時ファイルは消す. 
+     * 電卓の終了時に呼ぶ（追い出した変数はもう読み戻せなくなる）. 
+     */
+    void close() {
+        for(String var : new ArrayList<String>(lazy.keySet())) discardLazy(var);
+    }
+    /**
+     * 保存されている変数名の一覧を返す. まだ読み込んでいない変数も含む. 
+     * @return 変数名の一覧. 
+     */
+    public Set<String> names() {
+        LinkedHashSet<String> ret = new LinkedHashSet<String>(mem.keySet());
+        ret.addAll(lazy.keySet());
+        return ret;
     }
     /**
      * 保存されている変数の一覧を標準出力に表示する. 
+     * 読み込んでいない変数も表示のために読むが, メモリには置かない. 
+     * 予算を設定している場合は, 使用量とヒット・ミス・追い出しの回数も表示する. 
      */
     public Result tryExec(final String [] ts, final List<String> block, final Result res) {
         if(block.size() != 1) return null;
         if(ts.length == 1 && "show".equals(ts[0])) {
-            for(String var : mem.keySet()) {
-                Result v = mem.get(var);
+            for(String var : names()) {
+                Result v = mem.containsKey(var) ? mem.get(var) : load(var, lazy.get(var));
                 String sv = v.toString();
                 if(sv.indexOf('\n') >= 0) {
                     sv = sv.replaceAll("^|\\n", "\n ");
                 }
-                System.out.println(var + " = " + sv);
+                out.println(var + " = " + sv);
+            }
+            if(budget > 0) {
+                out.println("# memory: used = " + used + " / " + budget + " bytes, resident = " + mem.size()
+                                   + ", spilled = " + lazy.size() + ", hits = " + hits + ", misses = " + misses
+                                   + ", spills = " + spills);
             }
             return res;
         }
@@ -67,6 +230,362 @@ class Memory<Result> implements Command<Result> {
     }
 }
 
+/**
+ * 必要になったときに読み込まれる「結果」. 
+ * @param Result 「結果」の型
+ */
+interface LazyResult<Result> {
+    /**
+     * 「結果」を読み込んで返す. 
+     * @return 読み込んだ「結果」. 
+     * @throws UncheckedIOException 読み込みに失敗した場合. 
+     */
+    Result load();
+}
+
+/**
+ * 「結果」をスナップショットのファイルに書き込み, また読み出すためのインターフェース. 
+ * @param Result 「結果」の型
+ */
+interface ResultCodec<Result> {
+    /**
+     * 「結果」をファイルの現在位置に書き込む. 
+     * @param ch 書き込み先. 
+     * @param r 書き込む「結果」. 
+     */
+    void write(FileChannel ch, Result r) throws IOException;
+    /**
+     * ファイルの指定された範囲から「結果」を読み出す. 
+     * 範囲は {@code write} で書き込んだものそのもの. 
+     * @param ch 読み出し元. 
+     * @param offset 範囲の先頭. 
+     * @param length 範囲の長さ. 
+     * @return 読み出した「結果」. 
+     */
+    Result read(FileChannel ch, long offset, long length) throws IOException;
+    /**
+     * 「結果」がヒープ上で占めるおおよその大きさを返す. 
+     * @param r 「結果」. 
+     * @return おおよその大きさ（バイト）. 
+     */
+    long sizeOf(Result r);
+}
+
+/**
+ * 整数（IntNum）の「結果」を, 長さ（int）と2の補数表現のバイト列で読み書きする. 
+ */
+class IntNumCodec implements ResultCodec<IntNum> {
+    public void write(FileChannel ch, IntNum r) throws IOException {
+        byte [] bs = r.toBigInteger().toByteArray();
+        ByteBuffer buf = ByteBuffer.allocate(4 + bs.length);
+        buf.putInt(bs.length).put(bs).flip();
+        Checkpoint.writeFully(ch, buf);
+    }
+    public IntNum read(FileChannel ch, long offset, long length) throws IOException {
+        if(length < 4) throw new IOException("broken integer: " + length + " bytes");
+        ByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, offset, length);
+        int len = buf.getInt();
+        if(len < 0 || 4L + len != length) throw new IOException("broken integer: " + len + " bytes in " + length);
+        byte [] bs = new byte[len];
+        buf.get(bs);
+        return IntNum.of(new BigInteger(bs));
+    }
+    public long sizeOf(IntNum r) {
+        return r.bitLength() < 64 ? 24 : 64 + r.bitLength() / 8; // long に収まらなければ BigInteger の分も
+    }
+}
+
+/**
+ * 開いているスナップショット（または追い出し用の一時ファイル）と, それを参照するまだ読み込んでいない変数の数. 
+ * 参照する最後の変数が読み込まれるか上書きされたら閉じる. 
+ */
+class SnapshotFile {
+    /** ファイル. */
+    final FileChannel ch;
+    /** 閉じるときに消す一時ファイル. 消さないなら {@code null}. */
+    final File temp;
+    /** このファイルを参照している変数の数. */
+    private int refs;
+    /**
+     * 開いたファイルを受け取るコンストラクタ. 参照する変数はまだない. 
+     * @param ch ファイル. 
+     * @param temp 閉じるときに消す一時ファイル. 消さないなら {@code null}. 
+     */
+    SnapshotFile(FileChannel ch, File temp) {
+        this.ch = ch;
+        this.temp = temp;
+    }
+    /**
+     * 参照する変数を1つ増やす. 
+     */
+    void retain() {
+        refs++;
+    }
+    /**
+     * 参照する変数を1つ減らし, なくなったら閉じる. 
+     */
+    void release() {
+        if(--refs == 0) close();
+    }
+    /**
+     * ファイルを閉じる. 一時ファイルなら消す. 
+     */
+    void close() {
+        try {
+            ch.close();
+        } catch(IOException e) {
+        }
+        if(temp != null) temp.delete();
+    }
+}
+
+/**
+ * スナップショットのファイルの中の, まだ読み込んでいない1つの変数. 
+ * 読み込みはファイルのその変数の範囲だけをメモリマップして行う. 
+ * 読み込んだか不要になったら {@code release} を呼ぶこと（ファイルを参照する最後の変数ならファイルを閉じる）. 
+ * @param Result 「結果」の型
+ */
+class SnapshotEntry<Result> implements LazyResult<Result> {
+    /** スナップショットのファイル. */
+    final SnapshotFile file;
+    /** 変数の範囲の先頭. */
+    final long offset;
+    /** 変数の範囲の長さ. */
+    final long length;
+    /** 読み出しに使う方法. */
+    final ResultCodec<Result> codec;
+    /** {@code release} 済みか. */
+    private boolean released;
+    SnapshotEntry(SnapshotFile file, long offset, long length, ResultCodec<Result> codec) {
+        this.file = file;
+        this.offset = offset;
+        this.length = length;
+        this.codec = codec;
+        file.retain();
+    }
+    public Result load() {
+        try {
+            return codec.read(file.ch, offset, length);
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    /**
+     * 読み込まずに, 変数の範囲のバイト列をそのまま別のファイルの末尾に書き写す. 
+     * @param dst 書き込み先. 
+     */
+    void copyTo(FileChannel dst) throws IOException {
+        long pos = offset, end = offset + length;
+        while(pos < end) {
+            pos += file.ch.transferTo(pos, end - pos, dst);
+        }
+    }
+    /**
+     * この変数がもうファイルを使わないことを知らせる. 2回目以降は何もしない. 
+     */
+    void release() {
+        if(released) return;
+        released = true;
+        file.release();
+    }
+}
+
+/**
+ * 予算を超えてディスクに追い出した1つの変数. 
+ * 変数ごとに追い出し用のディレクトリに一時ファイルを作り, 読み戻したら（または上書きされたら）消す. 
+ * 終了時に残っているものは {@code Memory.close} で消す（{@code deleteOnExit} は JVM が終わるまで登録が溜まるので使わない）. 
+ * @param Result 「結果」の型
+ */
+class SpillEntry<Result> extends SnapshotEntry<Result> {
+    SpillEntry(SnapshotFile file, long length, ResultCodec<Result> codec) {
+        super(file, 0, length, codec);
+    }
+    /**
+     * 「結果」を新しい一時ファイルに書き出す. 
+     * @param r 「結果」. 
+     * @param codec 書き出しの方法. 
+     * @param dir 一時ファイルを作るディレクトリ. 
+     * @return 書き出した変数. 
+     */
+    static <Result> SpillEntry<Result> spill(Result r, ResultCodec<Result> codec, File dir) throws IOException {
+        File f = File.createTempFile("var", ".spill", dir);
+        FileChannel ch = FileChannel.open(f.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            codec.write(ch, r);
+        } catch(IOException e) {
+            ch.close();
+            f.delete();
+            throw e;
+        }
+        return new SpillEntry<Result>(new SnapshotFile(ch, f), ch.position(), codec);
+    }
+}
+
+/**
+ * 変数の一覧をファイルに保存し（checkpoint）, また, ファイルから変数を復元する（restore）「コマンド」. 
+ * <p><blockquote><pre>{@code
+ * checkpoint file
+ * }</pre></blockquote><p>
+ * という 1行の「ブロック」を受け付けて, 全ての変数をファイル {@code file} に保存し, 
+ * <p><blockquote><pre>{@code
+ * restore file
+ * }</pre></blockquote><p>
+ * という 1行の「ブロック」を受け付けて, ファイル {@code file} に保存された変数をメモリに戻す. 
+ * 現在の「結果」は変えない. <br />
+ * ファイルの形式は, 先頭にマジックナンバーと版数, 続いて各変数のデータ（{@code ResultCodec} で書いたもの）, 
+ * 最後に目次（変数名・位置・長さの並び）と目次の位置を置いたバイナリ形式. 
+ * 復元時は目次だけを読み, 各変数はメモリマップで初めて使われたときに読み込むので, 
+ * 大きなスナップショットからでもすぐに再開でき, 使った変数の分しか読まない. 
+ * また, 保存時にまだ読み込んでいない変数は, 元のファイルからバイト列をそのまま書き写す. 
+ * @param Result 「結果」の型
+ */
+class Checkpoint<Result> extends CommandWithMemory<Result> implements OutputAware {
+    /**
+     * エラーの出力先. 電卓から {@code setOutput} で渡される. 
+     */
+    private PrintStream err = System.err;
+    public void setOutput(PrintStream out, PrintStream err) {
+        this.err = err;
+    }
+    /** ファイルの先頭と末尾に置くマジックナンバー（"CALC"）. */
+    static final int MAGIC = 0x43414C43;
+    /** ファイル形式の版数. */
+    static final int VERSION = 1;
+    /** 「結果」の読み書きの方法. */
+    final ResultCodec<Result> codec;
+    /**
+     * 変数の情報を保持する {@code Memory} オブジェクトと, 「結果」の読み書きの方法を受け取るコンストラクタ. 
+     * @param mem 変数の情報を保持するオブジェクト. 
+     * @param codec 「結果」の読み書きの方法. 
+     */
+    Checkpoint(Memory<Result> mem, ResultCodec<Result> codec) {
+        super(mem);
+        this.codec = codec;
+    }
+    /**
+     * 保存と復元を実行する. 
+     * 失敗した場合はその旨を表示し, 現在の「結果」をそのまま返す. 
+     */
+    public Result tryExec(final String [] ts, final List<String> block, final Result res) {
+        if(block.size() != 1) return null;
+        if(ts.length < 2) return null;
+        if(!"checkpoint".equals(ts[0]) && !"restore".equals(ts[0])) return null;
+        // ファイル名は記号でトークンが切られているので, 1行目のコマンド名より後ろをそのまま使う
+        String file = block.get(0).trim().substring(ts[0].length()).trim();
+        try {
+            if("checkpoint".equals(ts[0])) {
+                save(file);
+            } else {
+                restore(file);
+            }
+        } catch(IOException e) {
+            err.println(ts[0] + " failed: " + e);
+        }
+        return res;
+    }
+    /**
+     * バッファの中身を全てファイルに書き込む. 
+     * @param ch 書き込み先. 
+     * @param buf 書き込む中身. 
+     */
+    static void writeFully(FileChannel ch, ByteBuffer buf) throws IOException {
+        while(buf.hasRemaining()) ch.write(buf);
+    }
+    /**
+     * 全ての変数をファイルに保存する. 
+     * 一時ファイルに書いてから置き換えるので, 書き込みの途中で失敗しても元のファイルは壊れない. 
+     * また, 保存先が読み込み途中のスナップショットそのものであっても問題ない. 
+     * @param file 保存先のファイル名. 
+     */
+    void save(String file) throws IOException {
+        Path path = Paths.get(file);
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        ArrayList<String> names = new ArrayList<String>(mem.names());
+        long [] offsets = new long[names.size()];
+        long [] lengths = new long[names.size()];
+        FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                          StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            ByteBuffer head = ByteBuffer.allocate(8);
+            head.putInt(MAGIC).putInt(VERSION).flip();
+            writeFully(ch, head);
+            for(int i = 0; i < names.size(); i++) {
+                offsets[i] = ch.position();
+                LazyResult<Result> l = mem.lazy.get(names.get(i));
+                if(l instanceof SnapshotEntry) { // 読み込んでいないものはそのまま書き写す
+                    ((SnapshotEntry<Result>)l).copyTo(ch);
+                } else {
+                    codec.write(ch, mem.get(names.get(i)));
+                }
+                lengths[i] = ch.position() - offsets[i];
+            }
+            // 目次と, 目次の位置
+            long dir = ch.position();
+            ByteArrayOutputStream bo = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bo);
+            out.writeInt(names.size());
+            for(int i = 0; i < names.size(); i++) {
+                out.writeUTF(names.get(i));
+                out.writeLong(offsets[i]);
+                out.writeLong(lengths[i]);
+            }
+            out.writeLong(dir);
+            out.writeInt(MAGIC);
+            writeFully(ch, ByteBuffer.wrap(bo.toByteArray()));
+        } finally {
+            ch.close();
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    /**
+     * ファイルに保存された変数をメモリに戻す. 同じ名前の変数は上書きされる. 
+     * ここでは目次だけを読み, 各変数は最初に使われたときに読み込む. 
+     * そのためファイルは開いたままにしておき, このファイルの変数が全て読み込まれるか上書きされたら閉じる. 
+     * @param file 復元元のファイル名. 
+     */
+    void restore(String file) throws IOException {
+        FileChannel ch = FileChannel.open(Paths.get(file), StandardOpenOption.READ);
+        try {
+            long size = ch.size();
+            if(size < 20) throw new IOException("not a checkpoint file: " + file);
+            ByteBuffer head = ch.map(FileChannel.MapMode.READ_ONLY, 0, 8);
+            ByteBuffer tail = ch.map(FileChannel.MapMode.READ_ONLY, size - 12, 12);
+            long dir = tail.getLong();
+            if(head.getInt() != MAGIC || tail.getInt() != MAGIC || dir < 8 || dir > size - 12) {
+                throw new IOException("not a checkpoint file: " + file);
+            }
+            if(head.getInt() != VERSION) throw new IOException("unsupported checkpoint version: " + file);
+            ByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, dir, size - 12 - dir);
+            byte [] bs = new byte[buf.remaining()];
+            buf.get(bs);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bs));
+            int count = in.readInt();
+            // 1つの変数の目次は少なくとも 18 バイト（名前の長さ 2, 位置 8, 長さ 8）なので, 目次の大きさで数を抑える
+            if(count < 0 || count > (bs.length - 4) / 18) throw new IOException("broken checkpoint file: " + file);
+            String [] vars = new String[count];
+            long [] offsets = new long[count];
+            long [] lengths = new long[count];
+            for(int i = 0; i < count; i++) {
+                vars[i] = in.readUTF();
+                offsets[i] = in.readLong();
+                lengths[i] = in.readLong();
+                if(offsets[i] < 8 || offsets[i] > dir || lengths[i] < 0 || lengths[i] > dir - offsets[i]) { // 足すと溢れうる
+                    throw new IOException("broken checkpoint file: " + file);
+                }
+            }
+            // 目次を全て読めてから変数を置き換える
+            SnapshotFile sf = new SnapshotFile(ch, null);
+            for(int i = 0; i < count; i++) {
+                mem.putLazy(vars[i], new SnapshotEntry<Result>(sf, offsets[i], lengths[i], codec));
+            }
+            if(count == 0) ch.close();
+        } catch(IOException | RuntimeException e) {
+            ch.close();
+            throw e;
+        }
+    }
+}
+
 /**
  * 変数の値を必要とする「コマンド」のためのベースクラス. 
  * いまのところほとんど意味はない. 
@@ -155,12 +674,12 @@ class UnknownVariableException extends RuntimeException {
  * {@code op} は {@code +} か {@code -} か {@code *} か {@code /} であり, 
  * 対応する演算が行われる. 
  */
-class IntArithWithMemory extends CommandWithMemory<BigInteger> {
+class IntArithWithMemory extends CommandWithMemory<IntNum> {
     /**
      * 変数の情報を保持する {@code Memory} オブジェクトを受け取るコンストラクタ. 
      * @param mem 変数の情報を保持するオブジェクト. 
      */
-    IntArithWithMemory(Memory<BigInteger> mem) {
+    IntArithWithMemory(Memory<IntNum> mem) {
         super(mem); // 親クラスのコンストラクタそのままよぶ
     }
     /**
@@ -170,16 +689,16 @@ class IntArithWithMemory extends CommandWithMemory<BigInteger> {
      * @return トークンが保存された変数名であった場合にはその変数の値を, 
                そうでなく, 10進数であった場合にはその数値を返す. それ以外の場合には {@code null}.
      */
-    BigInteger eval(String token) {
-        BigInteger m = mem.get(token); // 変数の値を Memory に問い合わせる
-        if(m == null) m = new BigInteger(token); // 変数の値がなければ 10進数として解釈
+    IntNum eval(String token) {
+        IntNum m = mem.get(token); // 変数の値を Memory に問い合わせる
+        if(m == null) m = IntNum.parse(token); // 変数の値がなければ 10進数として解釈
         return m;
     }
     /**
      * 1行「ブロック」の最初のトークンに指定された演算子での演算を, 2つ目のトークン（変数か値）で実行する. 
      * 
      */
-    public BigInteger tryExec(final String [] ts, final List<String> block, final BigInteger res) {
+    public IntNum tryExec(final String [] ts, final List<String> block, final IntNum res) {
         if(block.size() != 1) return null;
         if(ts.length == 2 && "+".equals(ts[0])) {
             return res.add(eval(ts[1]));
@@ -233,20 +752,42 @@ class MemoCalc {
      * メモリ機能付き電卓の生成と実行. 
      */
     public static void main(String [] args) throws Exception {
+        // 入力は標準入力から
+        BufferedReader br = new BufferedReader(new InputStreamReader(System.in));
+        // 電卓オブジェクトの生成と実行
+        Calculator<IntNum> c = create(br);
+        c.run(IntNum.ZERO);
+    }
+    /**
+     * メモリ付き電卓の「コマンド」のリストと変数用のメモリを用意して, 与えられた入力から読み込む電卓を生成する. 
+     * @param br 電卓の入力. 
+     * @return 生成した電卓. 
+     */
+    static Calculator<IntNum> create(BufferedReader br) {
         // 変数の値を覚えておくメモリオブジェクトの生成
-        Memory<BigInteger> mem = new Memory<BigInteger>();
+        Memory<IntNum> mem = new Memory<IntNum>();
         // コマンドリストを生成. 一部の「コマンド」は, メモリオブジェクトを共有する
-        ArrayList<Command<BigInteger>> comms = new ArrayList<Command<BigInteger>>();
-        comms.add(new EmptyCommand<BigInteger>());
+        ArrayList<Command<IntNum>> comms = new ArrayList<Command<IntNum>>();
+        IntNumRenderer renderer = new IntNumRenderer(1000); // 1000桁を超える値は省略して表示
+        comms.add(new EmptyCommand<IntNum>());
         comms.add(new IntValue());
         comms.add(new IntNeg());
+        comms.add(new IntPrint(renderer));
         comms.add(new IntArithWithMemory(mem));
-        comms.add(new LoadStore<BigInteger>(mem));
+        comms.add(new LoadStore<IntNum>(mem));
+        comms.add(new Checkpoint<IntNum>(mem, new IntNumCodec()));
         comms.add(mem);
-        // 入力は標準入力から
-        BufferedReader br = new BufferedReader(new InputStreamReader(System.in));
-        // 電卓オブジェクトの生成と実行
-        Calculator<BigInteger> c = new Calculator<BigInteger>(br, comms);
-        c.run(BigInteger.ZERO);
+        // undo/redo 用の履歴. IntNum は書き換えられないのでそのまま保存できる
+        History<IntNum> history = new History<IntNum>(100);
+        comms.add(history);
+        // 「コマンド」ごとの実行時間などの計測
+        CommandStats<IntNum> stats = new CommandStats<IntNum>();
+        comms.add(stats);
+        // 電卓オブジェクトの生成
+        Calculator<IntNum> c = new Calculator<IntNum>(br, comms);
+        c.history = history;
+        c.stats = stats;
+        c.renderer = renderer;
+        return c;
     }
-}
+}
\ No newline at end of file